@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AES payload encryption and hex encoding
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AesBenchmark {
+
+	private Aes aes;
+	private TnLogin login;
+	private String json;
+	private byte[] cipherText;
+	private String hex;
+
+	@Setup
+	public void setup() throws Exception {
+		aes = Aes.get();
+		login = Fixtures.toLogin();
+		json = login.toJson();
+		hex = aes.encrypt(json);
+		cipherText = Aes.hexToBytes(hex);
+	}
+
+	@Benchmark
+	public String encrypt() throws Exception {
+		return aes.encrypt(json);
+	}
+
+	@Benchmark
+	public String encryptJson() throws Exception {
+		return aes.encryptJson(login);
+	}
+
+	@Benchmark
+	public String encryptLogin() throws Exception {
+		return aes.encrypt(login.toJson());
+	}
+
+	@Benchmark
+	public Aes newAes() throws Exception {
+		return Aes.get();
+	}
+
+	@Benchmark
+	public String bytesToHex() {
+		return Aes.bytesToHex(cipherText);
+	}
+
+	@Benchmark
+	public byte[] hexToBytes() {
+		return Aes.hexToBytes(hex);
+	}
+
+	@Benchmark
+	public String padString() {
+		return Aes.padString(json);
+	}
+
+}
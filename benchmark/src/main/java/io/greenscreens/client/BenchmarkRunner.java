@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with GC profiler enabled.
+ * Accepts standard JMH command line options, 
+ * e.g. "BuilderBenchmark -f 2 -rf json"
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+
+		final CommandLineOptions cmd = new CommandLineOptions(args);
+
+		final Options options = new OptionsBuilder()
+				.parent(cmd)
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end URL generation from server data, 
+ * without network, single and multi threaded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BuilderBenchmark {
+
+	private String ecdhData;
+	private String rsaData;
+	private BuilderProfile profile;
+
+	@Setup
+	public void setup() throws Exception {
+		ecdhData = Fixtures.toAuthJson(Fixtures.toBase64(Fixtures.ecKeyPair()), 6);
+		rsaData = Fixtures.toAuthJson(Fixtures.toPem(Fixtures.rsaKeyPair()), 5);
+		profile = Fixtures.toBuilder(Fixtures.URL).toProfile();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public URI ecdh() throws Exception {
+		return Fixtures.toBuilder(Fixtures.URL).dataToUri(ecdhData);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public URI ecdhParallel() throws Exception {
+		return Fixtures.toBuilder(Fixtures.URL).dataToUri(ecdhData);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public URI ecdhProfile() throws Exception {
+		return profile.dataToUri(ecdhData, LoginSpec.get("QSECOFR", "QSECOFR"));
+	}
+
+	@Benchmark
+	@Threads(1)
+	public URI rsa() throws Exception {
+		return Fixtures.toBuilder(Fixtures.SSL_URL).dataToUri(rsaData);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public URI rsaParallel() throws Exception {
+		return Fixtures.toBuilder(Fixtures.SSL_URL).dataToUri(rsaData);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public URI rsaLegacy() throws Exception {
+		return Fixtures.toBuilder(Fixtures.URL).dataToUri(rsaData);
+	}
+
+}
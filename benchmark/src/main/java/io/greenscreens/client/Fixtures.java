@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+
+/**
+ * Server keys and canned server data shared by benchmarks
+ */
+enum Fixtures {
+	;
+
+	static final String OTP_KEY = "WWLWGFYJIF7RMXAY";
+	static final String URL = "http://localhost";
+	static final String SSL_URL = "https://localhost:8443";
+
+	/**
+	 * Server ECDH key pair, as used by GSv6+
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	static KeyPair ecKeyPair() throws Exception {
+		SecurityProvider.initialize();
+		final KeyPairGenerator generator = KeyPairGenerator.getInstance("ECDH", SecurityProvider.provider());
+		generator.initialize(new ECGenParameterSpec("P-256"));
+		return generator.generateKeyPair();
+	}
+
+	/**
+	 * Server RSA key pair, as used by GSv5 or older
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	static KeyPair rsaKeyPair() throws Exception {
+		final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		return generator.generateKeyPair();
+	}
+
+	static String toBase64(final KeyPair keyPair) {
+		return Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+	}
+
+	static String toPem(final KeyPair keyPair) {
+		return String.format("-----BEGIN PUBLIC KEY-----\n%s\n-----END PUBLIC KEY-----", Base64.getMimeEncoder().encodeToString(keyPair.getPublic().getEncoded()));
+	}
+
+	/**
+	 * Server response of /services/auth
+	 * 
+	 * @param key
+	 * @param ver
+	 * @return
+	 */
+	static String toAuthJson(final String key, final int ver) {
+		final String json = key.replace("\r", "").replace("\n", "\\n");
+		return String.format("{\"ts\":%d,\"ver\":%d,\"build\":20230101,\"key\":\"%s\"}", System.currentTimeMillis(), ver, json);
+	}
+
+	/**
+	 * Typical login data
+	 * 
+	 * @return
+	 */
+	static TnLogin toLogin() {
+		final TnLogin login = new TnLogin();
+		login.setUuid("0");
+		login.setHost("DEMO");
+		login.setUser("QSECOFR");
+		login.setPassword("QSECOFR");
+		login.setDisplayName("DSPGSADMIN");
+		login.setIpAddress("127.0.0.1");
+		login.setAppID(1568658458);
+		login.setOtp(123456);
+		login.setTs(System.currentTimeMillis());
+		login.setExp(System.currentTimeMillis() + 30000);
+		return login;
+	}
+
+	/**
+	 * Typical builder setup
+	 * 
+	 * @param url
+	 * @return
+	 */
+	static Builder toBuilder(final String url) {
+		return Builder.get(url, 1568658458, null, OTP_KEY)
+				.setUUID("0").setHost("DEMO")
+				.setUser("QSECOFR").setPassword("QSECOFR")
+				.setDisplayName("DSPGSADMIN")
+				.setIpAddress("127.0.0.1");
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Login data serialization and server data parsing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+	private TnLogin login;
+	private String auth;
+	private byte[] authBytes;
+
+	@Setup
+	public void setup() throws Exception {
+		login = Fixtures.toLogin();
+		auth = Fixtures.toAuthJson(Fixtures.toBase64(Fixtures.ecKeyPair()), 6);
+		authBytes = auth.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public String stringifyLogin() throws Exception {
+		return JsonUtil.stringify(login);
+	}
+
+	@Benchmark
+	public TnAuth parseAuth() throws Exception {
+		return JsonUtil.parse(TnAuth.class, auth);
+	}
+
+	@Benchmark
+	public TnAuth parseAuthBytes() throws Exception {
+		return JsonUtil.parse(TnAuth.class, authBytes);
+	}
+
+}
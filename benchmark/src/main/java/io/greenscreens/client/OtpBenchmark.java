@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.Key;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.eatthepath.otp.ConcurrentTimeBasedOneTimePasswordGenerator;
+import com.eatthepath.otp.TimeBasedOneTimePasswordGenerator;
+
+/**
+ * TOTP token generation
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OtpBenchmark {
+
+	private TimeBasedOneTimePasswordGenerator totp;
+	private TimeBasedOneTimePasswordGenerator concurrent;
+	private Key key;
+
+	@Setup
+	public void setup() throws Exception {
+		totp = new TimeBasedOneTimePasswordGenerator();
+		concurrent = new ConcurrentTimeBasedOneTimePasswordGenerator();
+		key = new SecretKeySpec(Utils.decodeOTPKey(Fixtures.OTP_KEY), totp.getAlgorithm());
+	}
+
+	/**
+	 * Shared generator and decoded key
+	 */
+	@Benchmark
+	public int generate() throws Exception {
+		return totp.generateOneTimePassword(key, Instant.now());
+	}
+
+	/**
+	 * Shared generator without lock, precomputed HMAC key state
+	 */
+	@Benchmark
+	public int generateConcurrent() throws Exception {
+		return concurrent.generateOneTimePassword(key, Instant.now());
+	}
+
+	/**
+	 * New generator and key decoding for every token
+	 */
+	@Benchmark
+	public int generateNew() throws Exception {
+		final TimeBasedOneTimePasswordGenerator generator = new TimeBasedOneTimePasswordGenerator();
+		final Key secret = new SecretKeySpec(Utils.decodeOTPKey(Fixtures.OTP_KEY), generator.getAlgorithm());
+		return generator.generateOneTimePassword(secret, Instant.now());
+	}
+
+	/**
+	 * Token served from per key cache
+	 */
+	@Benchmark
+	public int cached() throws Exception {
+		return OtpCache.of(Fixtures.OTP_KEY).get();
+	}
+
+	@Benchmark
+	public byte[] decodeOTPKey() {
+		return Utils.decodeOTPKey(Fixtures.OTP_KEY);
+	}
+
+}
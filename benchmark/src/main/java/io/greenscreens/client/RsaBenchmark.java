@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RSA wrap of AES key used for GSv5 or older
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RsaBenchmark {
+
+	private String pem;
+	private PublicKey publicKey;
+	private byte[] spec;
+
+	@Setup
+	public void setup() throws Exception {
+		pem = Fixtures.toPem(Fixtures.rsaKeyPair());
+		publicKey = RsaUtil.getPublicKey(pem);
+		spec = Aes.get().getSpec();
+	}
+
+	@Benchmark
+	public String encryptModern() throws Exception {
+		return RsaUtil.encrypt(spec, publicKey, true);
+	}
+
+	@Benchmark
+	public String encryptLegacy() throws Exception {
+		return RsaUtil.encrypt(spec, publicKey, false);
+	}
+
+	@Benchmark
+	public PublicKey getPublicKey() throws Exception {
+		return RsaUtil.getPublicKey(pem);
+	}
+
+}
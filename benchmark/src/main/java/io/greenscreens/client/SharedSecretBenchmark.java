@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ECDH key exchange used for GSv6+
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SharedSecretBenchmark {
+
+	private String serverKey;
+	private KeyPair keyPair;
+
+	@Setup
+	public void setup() throws Exception {
+		serverKey = Fixtures.toBase64(Fixtures.ecKeyPair());
+		keyPair = SharedSecret.newKeyPair();
+	}
+
+	@Benchmark
+	public KeyPair newKeyPair() throws Exception {
+		return SharedSecret.newKeyPair();
+	}
+
+	@Benchmark
+	public Aes generateShared() throws Exception {
+		return SharedSecret.generateShared(serverKey, keyPair.getPrivate());
+	}
+
+	@Benchmark
+	public String flatten() {
+		return SharedSecret.flatten(keyPair);
+	}
+
+}
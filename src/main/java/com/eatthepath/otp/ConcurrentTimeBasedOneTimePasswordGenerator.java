@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package com.eatthepath.otp;
+
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * <p>Generates time-based one-time passwords (TOTP) as specified in
+ * <a href="https://tools.ietf.org/html/rfc6238">RFC&nbsp;6238</a> without locking.</p>
+ *
+ * <p>Drop-in replacement for {@link TimeBasedOneTimePasswordGenerator}. Instead of initializing a shared
+ * {@link javax.crypto.Mac} under a lock for every password, HMAC inner and outer padded key state is computed once
+ * per key and every password is computed from a copy of that state, so concurrent callers never wait for each
+ * other. Supports {@value TimeBasedOneTimePasswordGenerator#TOTP_ALGORITHM_HMAC_SHA1},
+ * {@value TimeBasedOneTimePasswordGenerator#TOTP_ALGORITHM_HMAC_SHA256} and
+ * {@value TimeBasedOneTimePasswordGenerator#TOTP_ALGORITHM_HMAC_SHA512}.</p>
+ */
+public class ConcurrentTimeBasedOneTimePasswordGenerator extends TimeBasedOneTimePasswordGenerator {
+
+    private final int modDivisor;
+
+    private volatile PrecomputedHmac hmac;
+
+    /**
+     * Constructs a new generator with a default time-step (30 seconds), password length
+     * ({@value com.eatthepath.otp.HmacOneTimePasswordGenerator#DEFAULT_PASSWORD_LENGTH} decimal digits), and HMAC
+     * algorithm ({@value com.eatthepath.otp.HmacOneTimePasswordGenerator#HOTP_HMAC_ALGORITHM}).
+     *
+     * @throws NoSuchAlgorithmException if the underlying JRE doesn't support the HMAC algorithm
+     */
+    public ConcurrentTimeBasedOneTimePasswordGenerator() throws NoSuchAlgorithmException {
+        this(DEFAULT_TIME_STEP);
+    }
+
+    /**
+     * Constructs a new generator with the given time-step and a default password length and HMAC algorithm.
+     *
+     * @param timeStep the time-step for this generator
+     *
+     * @throws NoSuchAlgorithmException if the underlying JRE doesn't support the HMAC algorithm
+     */
+    public ConcurrentTimeBasedOneTimePasswordGenerator(final Duration timeStep) throws NoSuchAlgorithmException {
+        this(timeStep, HmacOneTimePasswordGenerator.DEFAULT_PASSWORD_LENGTH);
+    }
+
+    /**
+     * Constructs a new generator with the given time-step and password length and a default HMAC algorithm.
+     *
+     * @param timeStep the time-step for this generator
+     * @param passwordLength the length, in decimal digits, of the one-time passwords to be generated; must be between
+     * 6 and 8, inclusive
+     *
+     * @throws NoSuchAlgorithmException if the underlying JRE doesn't support the HMAC algorithm
+     */
+    public ConcurrentTimeBasedOneTimePasswordGenerator(final Duration timeStep, final int passwordLength) throws NoSuchAlgorithmException {
+        this(timeStep, passwordLength, TOTP_ALGORITHM_HMAC_SHA1);
+    }
+
+    /**
+     * Constructs a new generator with the given time-step, password length, and HMAC algorithm.
+     *
+     * @param timeStep the time-step for this generator
+     * @param passwordLength the length, in decimal digits, of the one-time passwords to be generated; must be between
+     * 6 and 8, inclusive
+     * @param algorithm the name of the {@link javax.crypto.Mac} algorithm to use when generating passwords
+     *
+     * @throws NoSuchAlgorithmException if the HMAC algorithm is not supported
+     */
+    public ConcurrentTimeBasedOneTimePasswordGenerator(final Duration timeStep, final int passwordLength, final String algorithm) throws NoSuchAlgorithmException {
+        super(timeStep, passwordLength, algorithm);
+
+        PrecomputedHmac.check(algorithm);
+
+        int divisor = 1;
+        for (int i = 0; i < passwordLength; i++) {
+            divisor *= 10;
+        }
+
+        this.modDivisor = divisor;
+    }
+
+    /**
+     * Generates a one-time password using the given key and counter value. Unlike the parent class, this method is
+     * not synchronized.
+     *
+     * @param key the key to be used to generate the password
+     * @param counter the counter value for which to generate the password
+     *
+     * @return an integer representation of a one-time password; callers will need to format the password for display
+     * on their own
+     *
+     * @throws InvalidKeyException if the given key is inappropriate for this generator
+     */
+    @Override
+    public int generateOneTimePassword(final Key key, final long counter) throws InvalidKeyException {
+        final byte[] message = new byte[8];
+
+        for (int i = 7; i >= 0; i--) {
+            message[i] = (byte) (counter >>> (8 * (7 - i)));
+        }
+
+        final byte[] mac = this.getHmac(key).mac(message);
+        final int offset = mac[mac.length - 1] & 0x0f;
+
+        return ((mac[offset]     & 0x7f) << 24 |
+                (mac[offset + 1] & 0xff) << 16 |
+                (mac[offset + 2] & 0xff) <<  8 |
+                (mac[offset + 3] & 0xff)) %
+                this.modDivisor;
+    }
+
+    /**
+     * Returns prepared HMAC state for the given key, preparing it if the key changed since the last call.
+     */
+    private PrecomputedHmac getHmac(final Key key) throws InvalidKeyException {
+        PrecomputedHmac current = this.hmac;
+
+        if (current == null || !current.matches(key)) {
+            current = PrecomputedHmac.of(key, this.getAlgorithm());
+            this.hmac = current;
+        }
+
+        return current;
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package com.eatthepath.otp;
+
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * <p>HMAC (<a href="https://tools.ietf.org/html/rfc2104">RFC&nbsp;2104</a>) with the inner and outer padded key
+ * state computed once per key.</p>
+ *
+ * <p>Every MAC computation starts from a copy of the prepared digest state, so instances are immutable and may be
+ * used by any number of threads without locking.</p>
+ */
+final class PrecomputedHmac {
+
+    private static final byte IPAD = 0x36;
+    private static final byte OPAD = 0x5c;
+
+    private final Key key;
+    private final byte[] encoded;
+    private final String digestAlgorithm;
+
+    private final byte[] innerPad;
+    private final byte[] outerPad;
+
+    private final MessageDigest inner;
+    private final MessageDigest outer;
+
+    private PrecomputedHmac(final Key key, final byte[] encoded, final String digestAlgorithm, final int blockSize)
+            throws NoSuchAlgorithmException {
+
+        this.key = key;
+        this.encoded = encoded;
+        this.digestAlgorithm = digestAlgorithm;
+
+        final MessageDigest digest = MessageDigest.getInstance(digestAlgorithm);
+        final byte[] block = Arrays.copyOf(encoded.length > blockSize ? digest.digest(encoded) : encoded, blockSize);
+
+        this.innerPad = new byte[blockSize];
+        this.outerPad = new byte[blockSize];
+
+        for (int i = 0; i < blockSize; i++) {
+            this.innerPad[i] = (byte) (block[i] ^ IPAD);
+            this.outerPad[i] = (byte) (block[i] ^ OPAD);
+        }
+
+        this.inner = MessageDigest.getInstance(digestAlgorithm);
+        this.inner.update(this.innerPad);
+
+        this.outer = MessageDigest.getInstance(digestAlgorithm);
+        this.outer.update(this.outerPad);
+    }
+
+    /**
+     * Prepares HMAC state for the given key.
+     *
+     * @param key the HMAC key
+     * @param macAlgorithm the name of the {@link javax.crypto.Mac} algorithm, e.g. {@code HmacSHA1}
+     *
+     * @return prepared HMAC state
+     *
+     * @throws InvalidKeyException if the key has no raw encoding or the algorithm is not supported
+     */
+    static PrecomputedHmac of(final Key key, final String macAlgorithm) throws InvalidKeyException {
+        if (key == null || key.getEncoded() == null) {
+            throw new InvalidKeyException("Key must provide raw encoding.");
+        }
+
+        try {
+            return new PrecomputedHmac(key, key.getEncoded(), digestAlgorithm(macAlgorithm), blockSize(macAlgorithm));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new InvalidKeyException(e);
+        }
+    }
+
+    /**
+     * Checks if the given MAC algorithm can be computed from prepared digest state.
+     *
+     * @param macAlgorithm the name of the {@link javax.crypto.Mac} algorithm
+     *
+     * @throws NoSuchAlgorithmException if the algorithm is not supported
+     */
+    static void check(final String macAlgorithm) throws NoSuchAlgorithmException {
+        MessageDigest.getInstance(digestAlgorithm(macAlgorithm));
+    }
+
+    /**
+     * Checks if this state was prepared for the given key.
+     *
+     * @param other the key to check
+     *
+     * @return {@code true} if the key is the same one or has the same encoding
+     */
+    boolean matches(final Key other) {
+        return this.key == other || (other != null && MessageDigest.isEqual(this.encoded, other.getEncoded()));
+    }
+
+    /**
+     * Computes HMAC of the given message.
+     *
+     * @param message the message
+     *
+     * @return the MAC
+     */
+    byte[] mac(final byte[] message) {
+        final MessageDigest innerDigest = copy(this.inner, this.innerPad);
+        innerDigest.update(message);
+
+        final MessageDigest outerDigest = copy(this.outer, this.outerPad);
+        outerDigest.update(innerDigest.digest());
+
+        return outerDigest.digest();
+    }
+
+    private MessageDigest copy(final MessageDigest digest, final byte[] pad) {
+        try {
+            return (MessageDigest) digest.clone();
+        } catch (final CloneNotSupportedException e) {
+            // provider without cloneable digest; start over from the padded key
+            try {
+                final MessageDigest fresh = MessageDigest.getInstance(this.digestAlgorithm);
+                fresh.update(pad);
+                return fresh;
+            } catch (final NoSuchAlgorithmException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static String digestAlgorithm(final String macAlgorithm) throws NoSuchAlgorithmException {
+        switch (macAlgorithm.toUpperCase(Locale.ROOT)) {
+            case "HMACSHA1":
+                return "SHA-1";
+            case "HMACSHA256":
+                return "SHA-256";
+            case "HMACSHA512":
+                return "SHA-512";
+            default:
+                throw new NoSuchAlgorithmException("Unsupported HMAC algorithm: " + macAlgorithm);
+        }
+    }
+
+    private static int blockSize(final String macAlgorithm) {
+        return macAlgorithm.toUpperCase(Locale.ROOT).endsWith("SHA512") ? 128 : 64;
+    }
+}
@@ -4,11 +4,11 @@
 package io.greenscreens.client;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
-import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -29,19 +29,15 @@ final class Aes {
 	final private static byte[] ALPHANUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".getBytes();
 	final private static Charset UTF8 = StandardCharsets.UTF_8;
 	
-	private static Cipher cipher;
-	private static SecureRandom randomSecureRandom; 
-
 	private IvParameterSpec ivspec;
 	private SecretKeySpec keyspec;
 
-	static {
-		try {
-			cipher = Cipher.getInstance("AES/CTR/NoPadding");	
-			randomSecureRandom = SecureRandom.getInstance("SHA1PRNG");
-		} catch (GeneralSecurityException e) {
-			LOG.error(e.getMessage(), e);
-		}
+	/**
+	 * Writer of UTF-8 JSON payload into encryption buffer
+	 */
+	@FunctionalInterface
+	interface Payload {
+		void writeTo(OutputStream out) throws IOException;
 	}
 		
 	/**
@@ -113,6 +109,7 @@ final class Aes {
 		byte[] encrypted = null;
 
 		try {
+			final Cipher cipher = CryptoContext.get().getAes();
 			cipher.init(Cipher.ENCRYPT_MODE, keyspec, iv);
 			encrypted = cipher.doFinal(padString(text).getBytes(UTF8));
 		} catch (Exception e) {
@@ -130,14 +127,102 @@ final class Aes {
 		return bytesToHex(encryptData(text, ivspec));
 	}
 
+	/**
+	 * Serialize object to JSON and encrypt it to hex string.
+	 * JSON is written, padded and encrypted in thread bound buffers
+	 * without intermediate copies.
+	 * @param object
+	 * @return
+	 * @throws Exception
+	 */
+	public String encryptJson(final Object object) throws Exception {
+		return encryptJson(object, StageTimer.NONE);
+	}
+
+	/**
+	 * Serialize object to JSON and encrypt it to hex string, measuring stages
+	 * @param object
+	 * @param timer
+	 * @return
+	 * @throws Exception
+	 */
+	String encryptJson(final Object object, final StageTimer timer) throws Exception {
+
+		try {
+			final PayloadBuffer buffer = CryptoContext.get().getPayload();
+			final int len = encryptPayload(buffer, out -> JsonUtil.write(out, object), timer);
+			final String hex = HexCodec.toHex(buffer.output(), 0, len);
+			timer.mark(BuildListener.Stage.ENCRYPT, len);
+			return hex;
+		} catch (Exception e) {
+			LOG.error(e.getMessage());
+			throw e;
+		}
+	}
+
+	/**
+	 * Write JSON payload, encrypt it and write it with given prefix as hex digits
+	 * directly to URL target, without creating hex string.
+	 * Nothing is written if encryption fails.
+	 * @param payload
+	 * @param timer
+	 * @param prefix
+	 * @param out
+	 * @throws Exception
+	 */
+	void encryptJson(final Payload payload, final StageTimer timer, final UrlWriter.Part prefix, final UrlWriter out) throws Exception {
+
+		try {
+			final PayloadBuffer buffer = CryptoContext.get().getPayload();
+			final int len = encryptPayload(buffer, payload, timer);
+			out.write(prefix).hex(buffer.output(), 0, len);
+			timer.mark(BuildListener.Stage.ENCRYPT, len);
+		} catch (Exception e) {
+			LOG.error(e.getMessage());
+			throw e;
+		}
+	}
+
+	/**
+	 * Serialize, pad and encrypt payload into payload output buffer,
+	 * plain payload is wiped when done
+	 * @param buffer
+	 * @param payload
+	 * @param timer
+	 * @return encrypted length
+	 * @throws Exception
+	 */
+	private int encryptPayload(final PayloadBuffer buffer, final Payload payload, final StageTimer timer) throws Exception {
+
+		try {
+			payload.writeTo(buffer);
+			timer.mark(BuildListener.Stage.SERIALIZE, buffer.size());
+			buffer.pad(16, (byte) ' ');
+
+			final Cipher cipher = CryptoContext.get().getAes();
+			cipher.init(Cipher.ENCRYPT_MODE, keyspec, ivspec);
+
+			final int size = buffer.size();
+			final byte[] output = buffer.output(cipher.getOutputSize(size));
+			return cipher.doFinal(buffer.input(), 0, size, output, 0);
+		} finally {
+			buffer.wipe();
+		}
+	}
+
 	/**
 	 * Create random aes key and initialization vector
 	 * @param size
 	 * @return
 	 */
-	protected static byte[] getRandom(final int size)  {
+	protected static byte[] getRandom(final int size) throws IOException {
 		final byte[] iv = new byte[size];
-		randomSecureRandom.nextBytes(iv);
+		try {
+			getRandomSource().nextBytes(iv);
+		} catch (GeneralSecurityException e) {
+			LOG.error(e.getMessage(), e);
+			throw new IOException(e);
+		}
 		return iv;
 	}
 	
@@ -145,18 +230,29 @@ final class Aes {
 	 * Helper 
 	 * @param size
 	 * @return
+	 * @throws IOException 
 	 */
-	protected static byte[] getRandomString(final int size)  {
+	protected static byte[] getRandomString(final int size) throws IOException {
 		
-		final ByteBuffer cb = ByteBuffer.allocate(size);
-		
-        for (int i = 0; i < size; i++) {
-            int rndIndex = randomSecureRandom.nextInt(ALPHANUM.length);
-            cb.put(ALPHANUM[rndIndex]);
-        }
-        return cb.array();
+		final byte[] data = new byte[size];
+		try {
+			getRandomSource().nextChars(ALPHANUM, data);
+		} catch (GeneralSecurityException e) {
+			LOG.error(e.getMessage(), e);
+			throw new IOException(e);
+		}
+		return data;
 	}
 	
+	/**
+	 * Random source bound to the current thread
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	private static RandomSource getRandomSource() throws GeneralSecurityException {
+		return CryptoContext.get().getRandom();
+	}
+
 	/**
 	 * Blank padding for AES algorithm
 	 * 
@@ -191,18 +287,7 @@ final class Aes {
 			return null;
 		}
 
-		int len = data.length;
-		final StringBuilder sb = new StringBuilder();
-
-		for (int i = 0; i < len; i++) {
-			if ((data[i] & 0xFF) < 16) {
-				sb.append("0");
-				sb.append(Integer.toHexString(data[i] & 0xFF));
-			} else {
-				sb.append(Integer.toHexString(data[i] & 0xFF));
-			}
-		}
-		return sb.toString();
+		return HexCodec.toHex(data);
 	}
 
 	/**
@@ -217,14 +302,7 @@ final class Aes {
 			return null;
 		}
 
-		final int len = str.length() / 2;
-		byte[] buffer = new byte[len];
-
-		for (int i = 0; i < len; i++) {
-			buffer[i] = (byte) Integer.parseInt(str.substring(i * 2, i * 2 + 2), 16);
-		}
-
-		return buffer;
+		return HexCodec.fromHex(str);
 	}
 	
 }
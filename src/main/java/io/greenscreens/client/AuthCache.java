@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Process wide cache of Green Screens server authorization data.
+ * Server key, version and build change only on key rotation,
+ * so there is no need to fetch them for every generated URL.
+ * Concurrent requests for the same URL are coalesced into a single fetch,
+ * entries close to expiration are refreshed in background.
+ */
+public enum AuthCache {
+	;
+
+	private static final Logger LOG = LoggerFactory.getLogger(AuthCache.class);
+
+	private static final ConcurrentHashMap<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		final Thread thread = new Thread(r, "gs-auth-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private static volatile long ttl = TimeUnit.MINUTES.toMillis(5);
+	private static volatile long refreshAhead = TimeUnit.SECONDS.toMillis(30);
+	private static volatile long staleIfError = 0;
+
+	/**
+	 * Server authorization data loader
+	 */
+	@FunctionalInterface
+	interface Loader {
+
+		TnAuth load() throws Exception;
+
+		/**
+		 * Load without blocking caller thread
+		 * @param executor for blocking loaders
+		 * @return
+		 */
+		default CompletableFuture<TnAuth> loadAsync(final Executor executor) {
+			final CompletableFuture<TnAuth> future = new CompletableFuture<>();
+			executor.execute(() -> complete(this, future));
+			return future;
+		}
+	}
+
+	/**
+	 * Set how long server data is valid. Zero disables caching,
+	 * server data is fetched for every request, concurrent requests
+	 * share a single fetch. Last good data is still kept
+	 * for use within stale-if-error window.
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setTtl(final long value, final TimeUnit unit) {
+		ttl = Math.max(0, unit.toMillis(value));
+	}
+
+	/**
+	 * Set time before expiration when data is refreshed in background
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setRefreshAhead(final long value, final TimeUnit unit) {
+		refreshAhead = Math.max(0, unit.toMillis(value));
+	}
+
+	/**
+	 * Set how long expired data may still be used when server is not available.
+	 * While server fails, expired data is returned immediately 
+	 * and reload is retried in background. Zero disables stale data use.
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setStaleIfError(final long value, final TimeUnit unit) {
+		staleIfError = Math.max(0, unit.toMillis(value));
+	}
+
+	/**
+	 * Remove cached data for given URL, e.g. after server key rotation
+	 *
+	 * @param url
+	 */
+	public static void invalidate(final String url) {
+		CACHE.remove(url);
+	}
+
+	/**
+	 * Remove all cached data
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	/**
+	 * Get cached server data or load it if missing or expired
+	 *
+	 * @param url
+	 * @param loader
+	 * @return
+	 * @throws Exception
+	 */
+	static TnAuth get(final String url, final Loader loader) throws Exception {
+		final Entry entry = CACHE.computeIfAbsent(url, k -> new Entry());
+		return entry.get(loader);
+	}
+
+	/**
+	 * Get cached server data or load it in background if missing or expired
+	 *
+	 * @param url
+	 * @param loader
+	 * @return
+	 */
+	static CompletableFuture<TnAuth> getAsync(final String url, final Loader loader) {
+		final Entry entry = CACHE.computeIfAbsent(url, k -> new Entry());
+		return entry.getAsync(loader);
+	}
+
+	private static void complete(final Loader loader, final CompletableFuture<TnAuth> future) {
+		try {
+			future.complete(loader.load());
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Get last known data for given URL if still inside stale-if-error window,
+	 * e.g. when fetch deadline is exceeded
+	 *
+	 * @param url
+	 * @return data or null if not available
+	 */
+	static TnAuth getStale(final String url) {
+		final Entry entry = CACHE.get(url);
+		return Objects.isNull(entry) ? null : entry.getStale(System.currentTimeMillis());
+	}
+
+	/**
+	 * Reload server data in background, keeping cached data in use meanwhile
+	 *
+	 * @param url
+	 * @param loader
+	 */
+	static void refresh(final String url, final Loader loader) {
+		if (ttl > 0) {
+			CACHE.computeIfAbsent(url, k -> new Entry()).refresh(loader, true);
+		}
+	}
+
+	/**
+	 * Cached data for a single server URL
+	 */
+	private static final class Entry {
+
+		private final AtomicReference<CompletableFuture<TnAuth>> pending = new AtomicReference<>();
+
+		private volatile TnAuth auth;
+		private volatile long expires;
+
+		// last load failed, expired data is served while retrying in background
+		private volatile boolean failing;
+
+		TnAuth get(final Loader loader) throws Exception {
+
+			final TnAuth current = auth;
+			final long now = System.currentTimeMillis();
+
+			if (Objects.nonNull(current) && now < expires) {
+				if (now >= expires - refreshAhead) {
+					refresh(loader, true);
+				}
+				return current;
+			}
+
+			if (failing && Objects.nonNull(getStale(now))) {
+				refresh(loader, true);
+				return current;
+			}
+
+			try {
+				return Futures.await(refresh(loader, false));
+			} catch (Exception e) {
+				final TnAuth stale = getStale(System.currentTimeMillis());
+				if (Objects.isNull(stale)) {
+					throw e;
+				}
+				return stale;
+			}
+		}
+
+		CompletableFuture<TnAuth> getAsync(final Loader loader) {
+
+			final TnAuth current = auth;
+			final long now = System.currentTimeMillis();
+
+			if (Objects.nonNull(current) && now < expires) {
+				if (now >= expires - refreshAhead) {
+					refresh(loader, true);
+				}
+				return CompletableFuture.completedFuture(current);
+			}
+
+			if (failing && Objects.nonNull(getStale(now))) {
+				refresh(loader, true);
+				return CompletableFuture.completedFuture(current);
+			}
+
+			// dependent copy, so caller cancellation does not affect shared load
+			return refresh(loader, true).handle((data, err) -> {
+				if (Objects.isNull(err)) {
+					return data;
+				}
+				final TnAuth stale = getStale(System.currentTimeMillis());
+				if (Objects.isNull(stale)) {
+					throw new CompletionException(Futures.unwrap(err));
+				}
+				return stale;
+			});
+		}
+
+		/**
+		 * Expired data still inside stale-if-error window
+		 *
+		 * @param now
+		 * @return
+		 */
+		TnAuth getStale(final long now) {
+			final TnAuth current = auth;
+			return Objects.nonNull(current) && now < expires + staleIfError ? current : null;
+		}
+
+		/**
+		 * Start a new load or join the one already in progress
+		 *
+		 * @param loader
+		 * @param async if true, load in background; otherwise in caller thread
+		 * @return
+		 */
+		private CompletableFuture<TnAuth> refresh(final Loader loader, final boolean async) {
+
+			while (true) {
+
+				final CompletableFuture<TnAuth> running = pending.get();
+				if (Objects.nonNull(running)) {
+					return running;
+				}
+
+				final CompletableFuture<TnAuth> future = new CompletableFuture<>();
+				if (!pending.compareAndSet(null, future)) {
+					continue;
+				}
+
+				if (async) {
+					loadAsync(loader, future);
+				} else {
+					load(loader, future);
+				}
+
+				return future;
+			}
+		}
+
+		private void load(final Loader loader, final CompletableFuture<TnAuth> future) {
+			try {
+				done(loader.load(), null, future);
+			} catch (Throwable e) {
+				done(null, e, future);
+			}
+		}
+
+		private void loadAsync(final Loader loader, final CompletableFuture<TnAuth> future) {
+			try {
+				loader.loadAsync(EXECUTOR).whenComplete((data, e) -> done(data, e, future));
+			} catch (Throwable e) {
+				done(null, e, future);
+			}
+		}
+
+		private void done(final TnAuth data, final Throwable err, final CompletableFuture<TnAuth> future) {
+
+			if (Objects.isNull(err)) {
+				auth = data;
+				expires = System.currentTimeMillis() + ttl;
+				failing = false;
+			} else if (Objects.nonNull(auth)) {
+				failing = true;
+			}
+
+			pending.compareAndSet(future, null);
+
+			if (Objects.isNull(err)) {
+				future.complete(data);
+			} else {
+				final Throwable cause = Futures.unwrap(err);
+				LOG.debug(Utils.toMessage(cause), cause);
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+
+}
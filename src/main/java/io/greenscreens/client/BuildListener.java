@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+/**
+ * Receives URL generation metrics, e.g. to feed own metrics system.
+ * Server data fetch is reported separately from local work,
+ * so server slowness can be told apart from local CPU saturation.
+ * Register per builder with {@link Builder#setListener(BuildListener)}.
+ * Methods are called on generating threads, implementations must be thread safe and fast.
+ * When no listener is set, no time is measured.
+ */
+public interface BuildListener {
+
+	/**
+	 * Listener doing nothing, used by default
+	 */
+	BuildListener NONE = new BuildListener() { };
+
+	/**
+	 * URL generation stages
+	 */
+	enum Stage {
+		/** server data fetch over network, bytes received */
+		FETCH,
+		/** server data JSON parsing */
+		PARSE,
+		/** AES key (RSA path) or ephemeral EC key pair (ECDH path) generation */
+		KEYGEN,
+		/** ECDH key agreement and shared AES key derivation */
+		AGREEMENT,
+		/** TOTP token */
+		OTP,
+		/** login data to JSON, bytes written */
+		SERIALIZE,
+		/** AES encryption and hex encoding, encrypted bytes */
+		ENCRYPT,
+		/** RSA encryption of AES key, encoded key length */
+		WRAP,
+		/** URL assembly, URL length */
+		FORMAT
+	}
+
+	/**
+	 * Encryption used for the URL
+	 */
+	enum Path {
+		/** GSv6+ */
+		ECDH,
+		/** GSv5 or older */
+		RSA
+	}
+
+	/**
+	 * Stage finished
+	 *
+	 * @param stage
+	 * @param nanos stage duration
+	 * @param bytes data size, or 0 if not applicable
+	 */
+	default void onStage(final Stage stage, final long nanos, final int bytes) {
+	}
+
+	/**
+	 * URL generated
+	 *
+	 * @param path encryption used
+	 * @param modern true if modern browser (OAEP) encryption used
+	 * @param ver server version
+	 * @param build server build
+	 * @param nanos total duration, excluding server data fetch
+	 */
+	default void onComplete(final Path path, final boolean modern, final int ver, final int build, final long nanos) {
+	}
+
+	/**
+	 * URL generation or server data fetch failed,
+	 * including fetch deadline and failures covered by stale data
+	 *
+	 * @param error
+	 * @param nanos duration until failure
+	 */
+	default void onError(final Exception error, final long nanos) {
+	}
+
+}
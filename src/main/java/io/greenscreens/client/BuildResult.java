@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Result of a single URL generation in a batch.
+ * Contains generated URL or error.
+ */
+public final class BuildResult {
+
+	private final LoginSpec spec;
+	private final URI uri;
+	private final Exception error;
+
+	BuildResult(final LoginSpec spec, final URI uri, final Exception error) {
+		super();
+		this.spec = spec;
+		this.uri = uri;
+		this.error = error;
+	}
+
+	public LoginSpec getSpec() {
+		return spec;
+	}
+
+	public URI getUri() {
+		return uri;
+	}
+
+	public Exception getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return Objects.isNull(error);
+	}
+
+}
@@ -3,24 +3,23 @@
  */
 package io.greenscreens.client;
 
-/* for build2()
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
- */
 import java.net.URI;
-import java.security.Key;
-import java.security.KeyPair;
-import java.security.PublicKey;
-import java.time.Instant;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
-import javax.crypto.spec.SecretKeySpec;
-
-import com.eatthepath.otp.TimeBasedOneTimePasswordGenerator;
+import java.util.function.Function;
 
 /**
- * Green Screens Web Terminal Connection generator builder
+ * Green Screens Web Terminal Connection generator builder.
+ * Builder is not thread safe, for concurrent use 
+ * create {@link BuilderProfile} with {@link #toProfile()}.
  */
 public final class Builder {
 
@@ -70,7 +69,18 @@ public final class Builder {
 
 	private int expMode;
 	private long exp;
-	private long ts;
+
+	private long fetchTimeout;
+	private long encryptTimeout;
+	private double hedge;
+	private long hedgeDelay;
+
+	private PinnedKey pinnedKey;
+	private Clock clock;
+	private IpFilter ipFilter;
+
+	private Transport transport;
+	private BuildListener listener;
 
 	private String authUrl = AUTH_URL;
 	
@@ -246,52 +256,168 @@ public final class Builder {
 	}
 
 	/**
-	 * Get url encrypted expiration fixed to server time
+	 * Set transport used to fetch server data, 
+	 * if not set, default from {@link Utils#getTransport()} is used
 	 * 
+	 * @param transport
 	 * @return
 	 */
-	private long getExpiration() {
-		return exp + ts;
+	public Builder setTransport(final Transport transport) {
+		this.transport = transport;
+		return this;
 	}
 
-	private Builder setTimestamp(final long timestamp) {
+	/**
+	 * Set listener receiving per stage timings and outcome.
+	 * If not set, no metrics are collected.
+	 * 
+	 * @param listener
+	 * @return
+	 */
+	public Builder setListener(final BuildListener listener) {
+		this.listener = listener;
+		return this;
+	}
 
-		long diff = System.currentTimeMillis() - timestamp;
+	/**
+	 * Send second server data request if the first one is not done 
+	 * within given latency percentile of recent requests, e.g. 0.95.
+	 * The first successful response is used. Zero disables hedging.
+	 * Percentile is used after 8 requests are measured, until then
+	 * delay set with {@link #setHedgeDelay(long, TimeUnit)} is used.
+	 * 
+	 * @param percentile between 0 and 1
+	 * @return
+	 */
+	public Builder setHedgePercentile(final double percentile) {
+		this.hedge = Math.max(0, Math.min(1, percentile));
+		return this;
+	}
 
-		if (diff < 0) {
-			ts = System.currentTimeMillis() - diff;
-		} else {
-			ts = System.currentTimeMillis() + diff;
-		}
+	/**
+	 * Send second server data request if the first one is not done
+	 * within given time. If hedge percentile is set, this is the initial
+	 * delay used until enough latencies are measured. Zero disables fixed delay.
+	 * 
+	 * @param value
+	 * @param unit
+	 * @return
+	 */
+	public Builder setHedgeDelay(final long value, final TimeUnit unit) {
+		this.hedgeDelay = Math.max(0, unit.toNanos(value));
+		return this;
+	}
 
+	/**
+	 * Set max. time to wait for server data, including hedged request.
+	 * When exceeded, last known server data is used if allowed by 
+	 * {@link AuthCache#setStaleIfError(long, TimeUnit)}, otherwise build fails.
+	 * Zero means no deadline other than transport timeouts.
+	 * 
+	 * @param value
+	 * @param unit
+	 * @return
+	 */
+	public Builder setFetchTimeout(final long value, final TimeUnit unit) {
+		this.fetchTimeout = unit.toMillis(value);
 		return this;
 	}
 
-	private int getOtpToken() {
-		int token = 0;
-		if (otpKey != null && otpKey.trim().length() > 0) {
-			try {
-				final TimeBasedOneTimePasswordGenerator totp = new TimeBasedOneTimePasswordGenerator();
+	/**
+	 * Set max. time for URL encryption in asynchronous build, 
+	 * including time waiting in executor queue. Zero means no timeout.
+	 * 
+	 * @param value
+	 * @param unit
+	 * @return
+	 */
+	public Builder setEncryptTimeout(final long value, final TimeUnit unit) {
+		this.encryptTimeout = unit.toMillis(value);
+		return this;
+	}
 
-				final byte[] data = Utils.decodeOTPKey(otpKey);
-				final Key key = new SecretKeySpec(data, totp.getAlgorithm());
+	/**
+	 * Use server data known at deploy time instead of fetching it,
+	 * so URLs are generated without network calls.
+	 * Key must be updated here on server key rotation.
+	 * 
+	 * @param pinnedKey server key, version and build; null to fetch from server
+	 * @return
+	 */
+	public Builder setPinnedKey(final PinnedKey pinnedKey) {
+		this.pinnedKey = pinnedKey;
+		return this;
+	}
 
-				final Instant now = Instant.now();
-				token = totp.generateOneTimePassword(key, now);
+	/**
+	 * Set clock used for URL timestamp and expiration.
+	 * If not set, server time estimated from fetched server data is used,
+	 * or local time when server data is pinned.
+	 * 
+	 * @param clock
+	 * @return
+	 */
+	public Builder setClock(final Clock clock) {
+		this.clock = clock;
+		return this;
+	}
 
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
+	/**
+	 * Set client IP address filter, applied before any encryption is done.
+	 * Requests for addresses not allowed fail with {@link SecurityException}.
+	 * 
+	 * @param ipFilter
+	 * @return
+	 */
+	public Builder setIpFilter(final IpFilter ipFilter) {
+		this.ipFilter = ipFilter;
+		return this;
+	}
+
+	/**
+	 * Create immutable, thread safe snapshot of this builder.
+	 * Create profile once and use it for all requests, 
+	 * per user values are given with every request.
+	 * 
+	 * @return
+	 */
+	public BuilderProfile toProfile() {
+		return new BuilderProfile(url, authUrl, getTemplate(), otpKey, exp, fetchTimeout, encryptTimeout, hedge, hedgeDelay, pinnedKey, clock, ipFilter, transport, listener);
+	}
+
+	/**
+	 * Create immutable, thread safe generator for multiple server nodes
+	 * sharing this builder configuration. 
+	 * Nodes are this builder URL and given additional URLs.
+	 * 
+	 * @param strategy node selection strategy
+	 * @param urls additional server nodes
+	 * @return
+	 */
+	public ClusterProfile toCluster(final ClusterProfile.Strategy strategy, final String... urls) {
+
+		final Set<String> nodes = new LinkedHashSet<>();
+		nodes.add(url);
+		nodes.addAll(Arrays.asList(urls));
+
+		final TnLogin template = getTemplate();
+		final List<Function<BuildListener, BuilderProfile>> factories = new ArrayList<>(nodes.size());
+
+		for (String node : nodes) {
+			factories.add(l -> new BuilderProfile(node, authUrl, template, otpKey, exp, fetchTimeout, encryptTimeout, hedge, hedgeDelay, pinnedKey, clock, ipFilter, transport, l));
 		}
-		return token;
+
+		return new ClusterProfile(strategy, factories, listener);
 	}
 
-	private TnLogin getLogin() {
+	/**
+	 * Login data common to all requests
+	 * @return
+	 */
+	private TnLogin getTemplate() {
 
-		final int otpToken = getOtpToken();
 		final TnLogin login = new TnLogin();
 		login.setKey(apiKey);
-		login.setOtp(otpToken);
 		login.setAppID(appID);
 		login.setCodePage(codePage);
 		login.setCommonName(commonName);
@@ -307,62 +433,18 @@ public final class Builder {
 		login.setToken(token);
 		login.setUser(user);
 		login.setUuid(uuid);
-		login.setTs(ts);
-		login.setExp(getExpiration());
 		login.setExpMode(expMode);
 
 		return login;
 	}
 
-	/**
-	 * Returns server authorization info
-	 * @return
-	 * @throws Exception
-	 */
-	private String getServerData() throws Exception {
-		return Utils.sendGet(String.format("%s&s?modern=%s", url, authUrl, isModern() ? "1" : "0"));
-	}
-
-	/*
-	 * Java 17 Http client; no need for apache http lib. public URI build2() throws
-	 * Exception {
-	 * 
-	 * final SSLContext sslContext = new SSLContextBuilder()
-	 * .loadTrustMaterial(null, new TrustStrategy() { public boolean
-	 * isTrusted(X509Certificate[] arg0, String arg1) throws CertificateException {
-	 * return true; } }) .build();
-	 * 
-	 * 
-	 * final HttpClient httpClient = HttpClient.newBuilder()
-	 * .version(HttpClient.Version.HTTP_1_1) .connectTimeout(Duration.ofSeconds(10))
-	 * .sslContext(sslContext) .build();
-	 * 
-	 * final HttpRequest request = HttpRequest.newBuilder() .GET()
-	 * .uri(URI.create(url + authUrl)) .setHeader("User-Agent",
-	 * "Green Screens Client") .build();
-	 * 
-	 * final HttpResponse<String> response = httpClient.send(request,
-	 * HttpResponse.BodyHandlers.ofString());
-	 * 
-	 * final String data = response.body();
-	 * 
-	 * return dataToUri(data); }
-	 */
-
 	/**
 	 * Generate JSON object from builder. Used for testing / debugging
 	 * @return
 	 * @throws Exception
 	 */
 	public String toJSON() throws Exception {
-
-		final String data = getServerData();
-		final TnAuth auth = JsonUtil.parse(TnAuth.class, data);
-
-		setTimestamp(auth.getTs());
-		final TnLogin login = getLogin();
-
-		return JsonUtil.stringify(login);
+		return toProfile().toJSON(LoginSpec.get());
 	}
 
 	/**
@@ -372,74 +454,49 @@ public final class Builder {
 	 * @throws Exception
 	 */
 	public URI build() throws Exception {
-		final String data = getServerData();
-		return dataToUri(data);
-	}
-
-	public URI dataToUri(final String data) throws Exception {
-		final TnAuth auth = JsonUtil.parse(TnAuth.class, data);
-		return auth.getVer() > 5  ? dataToUriECDH(auth) : dataToUriRSA(auth);
+		return toProfile().build(LoginSpec.get());
 	}
 
 	/**
-	 * Create encrypted URI for GSv6 or newer versions
-	 * @param auth
+	 * Generate access URL asynchronously.
+	 * Server data is fetched on internal threads, 
+	 * encryption is done on given executor (e.g. compute pool or virtual threads).
+	 * Cancelling returned future stops work not started yet.
+	 * 
+	 * @param executor used for encryption
 	 * @return
-	 * @throws Exception
 	 */
-	private URI dataToUriECDH(final TnAuth auth) throws Exception {
-		
-		final KeyPair keyPair = SharedSecret.newKeyPair();	
-		final Aes aes = SharedSecret.generateShared(auth.getKey(), keyPair.getPrivate());
-		
-		setTimestamp(auth.getTs());
-		final TnLogin login = getLogin();
-
-		final String key = SharedSecret.flatten(keyPair);
-		final String data = aes.encrypt(login.toJson());
-		
-		final String v = Integer.toString(Long.toString(appID).hashCode());
-
-		final String s = String.format("%s%s?d=%s&k=%s&v=%s&t=1", url, LOGIN_URL_2, data, key, v);
-		return URI.create(s);
+	public CompletableFuture<URI> buildAsync(final Executor executor) {
+		return toProfile().buildAsync(LoginSpec.get(), executor);
 	}
 
 	/**
-	 * Create encrypted URI for GSv5 or older versions
-	 * @param auth
-	 * @return
-	 * @throws Exception
+	 * Generate access URLs for multiple users with a single server data fetch.
+	 * Uses common fork-join pool.
+	 * 
+	 * @param specs
+	 * @return results in the same order as specs
+	 * @throws Exception if server data is not available
 	 */
-	private URI dataToUriRSA(final TnAuth auth) throws Exception {
-
-		final Aes aesCrypt = Aes.get();
-		final PublicKey pk = RsaUtil.getPublicKey(auth.getKey());
-
-		setTimestamp(auth.getTs());
-		final TnLogin login = getLogin();
-
-		final String aesJson = aesCrypt.encrypt(login.toJson());
-		final String enc = RsaUtil.encrypt(aesCrypt.getSpec(), pk, isModern());
-		final String v = Integer.toString(Long.toString(appID).hashCode());
-
-		final String service = auth.getBuild() >= 20220725 ? LOGIN_URL_2 : LOGIN_URL_1;
-
-		String uri = null;		
-		if (auth.getVer() > 5 || isModern()) {
-			uri = String.format("%s%s?d=%s&k=%s&v=%s&t=1", url, service, aesJson, enc, v);
-		} else {
-			uri = String.format("%s%s?d=%s&k=%s&v=%s", url, service, aesJson, enc, v);			
-		}			
-		
-		return URI.create(uri);
+	public List<BuildResult> buildAll(final Collection<LoginSpec> specs) throws Exception {
+		return toProfile().buildAll(specs);
 	}
-	
+
 	/**
-	 * Check if modern browser encryption used or legacy 
-	 * @return
+	 * Generate access URLs for multiple users with a single server data fetch.
+	 * Values not set in LoginSpec are taken from this builder.
+	 * 
+	 * @param specs
+	 * @param executor used to generate URL for every spec
+	 * @return results in the same order as specs
+	 * @throws Exception if server data is not available
 	 */
-	private boolean isModern() {
-		return url.startsWith("https");
+	public List<BuildResult> buildAll(final Collection<LoginSpec> specs, final Executor executor) throws Exception {
+		return toProfile().buildAll(specs, executor);
+	}
+
+	public URI dataToUri(final String data) throws Exception {
+		return toProfile().dataToUri(data, LoginSpec.get());
 	}
 	
 }
@@ -0,0 +1,778 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable Green Screens Web Terminal Connection generator.
+ * Holds tenant configuration created once by {@link Builder#toProfile()},
+ * service addresses and request parameters derived from it are precomputed.
+ * Single instance is safe to use from any number of threads,
+ * per user values are given with every request as {@link LoginSpec}.
+ */
+public final class BuilderProfile {
+
+	// initial URL buffer size, typical URL is about 1 KB
+	private static final int URL_CAPACITY = 1536;
+
+	private static final UrlWriter.Part KEY = UrlWriter.Part.of("&k=");
+	private static final UrlWriter.Part VERIFY = UrlWriter.Part.of("&v=");
+	private static final UrlWriter.Part TYPE = UrlWriter.Part.of("&t=1");
+
+	private final String url;
+	private final String authUrl;
+	private final boolean modern;
+
+	// service address and data parameter prefixes, GS build GT 20220725 and older
+	private final UrlWriter.Part terminalUrl;
+	private final UrlWriter.Part liteUrl;
+
+	// login values common to all requests, never exposed
+	private final LoginTemplate template;
+	private final String appKey;
+
+	private final OtpCache otp;
+	private final long exp;
+
+	private final long fetchTimeout;
+	private final long encryptTimeout;
+	private final double hedge;
+	private final long hedgeDelay;
+
+	// server data known at deploy time, never fetched
+	private final TnAuth pinned;
+	private final Clock timeSource;
+
+	private final IpFilter ipFilter;
+
+	private final Transport transport;
+	private final BuildListener listener;
+
+	private final ClockSync clock;
+	private final LatencyWindow latencies;
+	private final AuthCache.Loader loader;
+
+	BuilderProfile(final String url, final String authUrl, final TnLogin template, final String otpKey, final long exp,
+			final long fetchTimeout, final long encryptTimeout, final double hedge, final long hedgeDelay,
+			final PinnedKey pinnedKey, final Clock timeSource, final IpFilter ipFilter, final Transport transport, final BuildListener listener) {
+		super();
+		this.url = url;
+		this.modern = url.startsWith("https");
+		this.authUrl = String.format("%s%s?modern=%s", url, authUrl, modern ? "1" : "0");
+		this.terminalUrl = UrlWriter.Part.of(url + Builder.LOGIN_URL_2 + "?d=");
+		this.liteUrl = UrlWriter.Part.of(url + Builder.LOGIN_URL_1 + "?d=");
+		this.template = new LoginTemplate(template);
+		this.appKey = toAppKey(template.getAppID());
+		this.otp = Objects.nonNull(otpKey) && otpKey.trim().length() > 0 ? OtpCache.of(otpKey) : null;
+		this.exp = exp;
+		this.fetchTimeout = fetchTimeout;
+		this.encryptTimeout = encryptTimeout;
+		this.hedge = hedge;
+		this.hedgeDelay = hedgeDelay;
+		this.pinned = Objects.isNull(pinnedKey) ? null : pinnedKey.toAuth();
+		this.timeSource = timeSource;
+		this.ipFilter = ipFilter;
+		this.transport = transport;
+		this.listener = Objects.isNull(listener) ? BuildListener.NONE : listener;
+		this.clock = ClockSync.of(url);
+		this.latencies = LatencyWindow.of(this.authUrl);
+		this.loader = new AuthCache.Loader() {
+
+			@Override
+			public TnAuth load() throws Exception {
+				return loadServerAuth();
+			}
+
+			@Override
+			public CompletableFuture<TnAuth> loadAsync(final Executor executor) {
+				return loadServerAuthAsync(executor);
+			}
+		};
+	}
+
+	/**
+	 * Green Screens server address
+	 * @return
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * Check if modern browser encryption used or legacy
+	 * @return
+	 */
+	public boolean isModern() {
+		return modern;
+	}
+
+	/**
+	 * Check if server data is pinned, so URLs are generated without network calls
+	 * @return
+	 */
+	public boolean isOffline() {
+		return Objects.nonNull(pinned);
+	}
+
+	/**
+	 * Fingerprint verification parameter
+	 * @param appID
+	 * @return
+	 */
+	private static String toAppKey(final long appID) {
+		return Integer.toString(Long.toString(appID).hashCode());
+	}
+
+	private int getOtpToken() {
+		int token = 0;
+		if (Objects.nonNull(otp)) {
+			try {
+				token = otp.get();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return token;
+	}
+
+	/**
+	 * Current time for URL timestamp, from configured clock
+	 * or estimated server time
+	 * @return
+	 */
+	private long now() {
+		return Objects.isNull(timeSource) ? clock.now() : timeSource.millis();
+	}
+
+	/**
+	 * Login JSON writer for a single request,
+	 * values not set in spec are taken from the profile template
+	 * @param spec
+	 * @param timer
+	 * @param serverTs server timestamp to use, or 0 for current time
+	 * @return
+	 */
+	private Aes.Payload getLogin(final LoginSpec spec, final StageTimer timer, final long serverTs) {
+
+		final int otpToken = getOtpToken();
+		timer.mark(BuildListener.Stage.OTP, 0);
+
+		final long ts = serverTs > 0 ? serverTs : now();
+		final long expires = LoginSpec.or(spec.getExp(), exp) + ts;
+
+		return out -> template.write(out, spec, otpToken, ts, expires);
+	}
+
+	/**
+	 * Transport used to fetch server data
+	 * @return
+	 */
+	private Transport getTransport() {
+		return Objects.isNull(transport) ? Utils.getTransport() : transport;
+	}
+
+	/**
+	 * Fetch and parse server authorization info
+	 * @return
+	 * @throws Exception
+	 */
+	private TnAuth loadServerAuth() throws Exception {
+		final long sent = System.nanoTime();
+		try {
+			final byte[] data = getTransport().get(authUrl);
+			final long received = System.nanoTime();
+			onFetch(received - sent, data.length);
+			return toServerAuth(data, sent, received);
+		} catch (Exception e) {
+			onFetchError(e, sent);
+			throw e;
+		}
+	}
+
+	/**
+	 * Fetch and parse server authorization info without blocking caller thread.
+	 * If hedging is enabled and response does not arrive within
+	 * latency percentile of recent fetches, or fixed delay until enough
+	 * fetches are measured, second request is sent
+	 * and the first successful response is used.
+	 * @param executor used by blocking transports
+	 * @return
+	 */
+	private CompletableFuture<TnAuth> loadServerAuthAsync(final Executor executor) {
+
+		final CompletableFuture<TnAuth> first = fetchServerAuth(executor);
+		final long delay = getHedgeDelay();
+
+		if (delay < 0 || first.isDone()) {
+			return first;
+		}
+
+		final CompletableFuture<TnAuth> result = new CompletableFuture<>();
+		final AtomicInteger pending = new AtomicInteger(2);
+
+		first.whenComplete((auth, err) -> race(result, pending, auth, err));
+
+		Futures.schedule(() -> {
+			if (!result.isDone()) {
+				fetchServerAuth(executor).whenComplete((auth, err) -> race(result, pending, auth, err));
+			}
+		}, delay);
+
+		return result;
+	}
+
+	/**
+	 * Hedged request delay in nanoseconds, -1 if hedging is not used
+	 * @return
+	 */
+	private long getHedgeDelay() {
+		final long delay = hedge > 0 ? latencies.percentile(hedge) : -1;
+		return delay < 0 && hedgeDelay > 0 ? hedgeDelay : delay;
+	}
+
+	/**
+	 * Complete with the first successful response, or the last error
+	 */
+	private static void race(final CompletableFuture<TnAuth> result, final AtomicInteger pending, final TnAuth auth, final Throwable err) {
+		if (Objects.isNull(err)) {
+			result.complete(auth);
+		} else if (pending.decrementAndGet() == 0) {
+			result.completeExceptionally(Futures.unwrap(err));
+		}
+	}
+
+	/**
+	 * Single asynchronous server authorization info request
+	 * @param executor
+	 * @return
+	 */
+	private CompletableFuture<TnAuth> fetchServerAuth(final Executor executor) {
+		final long sent = System.nanoTime();
+		return getTransport().getAsync(authUrl, executor).thenApply(data -> {
+			try {
+				final long received = System.nanoTime();
+				onFetch(received - sent, data.length);
+				return toServerAuth(data, sent, received);
+			} catch (Exception e) {
+				throw new CompletionException(e);
+			}
+		}).whenComplete((auth, err) -> {
+			if (Objects.nonNull(err)) {
+				onFetchError(err, sent);
+			}
+		});
+	}
+
+	private void onFetch(final long nanos, final int bytes) {
+		latencies.add(nanos);
+		listener.onStage(BuildListener.Stage.FETCH, nanos, bytes);
+	}
+
+	/**
+	 * Report server data fetch failure, before it is rethrown
+	 * or replaced with stale data
+	 * @param err
+	 * @param sent
+	 */
+	private void onFetchError(final Throwable err, final long sent) {
+		final Throwable cause = Futures.unwrap(err);
+		final Exception error = cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+		listener.onError(error, System.nanoTime() - sent);
+	}
+
+	/**
+	 * Parse server authorization info, update server clock and key
+	 * @param data
+	 * @param sent
+	 * @param received
+	 * @return
+	 * @throws Exception
+	 */
+	private TnAuth toServerAuth(final byte[] data, final long sent, final long received) throws Exception {
+		final StageTimer timer = StageTimer.start(listener);
+		final TnAuth auth = validate(JsonUtil.parse(TnAuth.class, data));
+		timer.mark(BuildListener.Stage.PARSE, data.length);
+		clock.sample(sent, auth.getTs(), received);
+		KeyCache.advertise(url, auth.getKey(), auth.getVer() > 5 ? SharedSecret::toPublicKey : RsaUtil::toPublicKey);
+		return auth;
+	}
+
+	/**
+	 * Reject server response without key or version, e.g. error JSON,
+	 * so it is handled as fetch failure and never cached
+	 * @param auth
+	 * @return
+	 * @throws IOException
+	 */
+	private static TnAuth validate(final TnAuth auth) throws IOException {
+		if (Objects.isNull(auth)) {
+			throw new IOException("Invalid server data: empty response");
+		}
+		if (Objects.isNull(auth.getKey()) || auth.getKey().trim().isEmpty()) {
+			throw new IOException("Invalid server data: missing key");
+		}
+		if (auth.getVer() <= 0) {
+			throw new IOException("Invalid server data: missing version");
+		}
+		return auth;
+	}
+
+	/**
+	 * Returns cached server authorization info,
+	 * server clock is re-sampled in background when needed
+	 * @return
+	 * @throws Exception
+	 */
+	TnAuth getServerAuth() throws Exception {
+
+		if (Objects.nonNull(pinned)) {
+			return pinned;
+		}
+
+		if (fetchTimeout > 0 || hedge > 0 || hedgeDelay > 0) {
+			return Futures.await(getServerAuthAsync().handle(this::orStale));
+		}
+
+		final TnAuth auth = AuthCache.get(authUrl, loader);
+		if (clock.isStale()) {
+			AuthCache.refresh(authUrl, loader);
+		}
+		return auth;
+	}
+
+	/**
+	 * Returns cached server authorization info without blocking caller thread,
+	 * failing with TimeoutException if fetch deadline is exceeded
+	 * @return
+	 */
+	private CompletableFuture<TnAuth> getServerAuthAsync() {
+		if (Objects.nonNull(pinned)) {
+			return CompletableFuture.completedFuture(pinned);
+		}
+		final CompletableFuture<TnAuth> auth = AuthCache.getAsync(authUrl, loader);
+		if (clock.isStale() && auth.isDone()) {
+			AuthCache.refresh(authUrl, loader);
+		}
+		return Futures.within(auth, fetchTimeout);
+	}
+
+	/**
+	 * On fetch error or deadline, use last known server data
+	 * if inside stale-if-error window
+	 * @param auth
+	 * @param err
+	 * @return
+	 */
+	private TnAuth orStale(final TnAuth auth, final Throwable err) {
+
+		if (Objects.isNull(err)) {
+			return auth;
+		}
+
+		// transport errors are reported by loader, deadline here
+		final Throwable cause = Futures.unwrap(err);
+		if (cause instanceof TimeoutException) {
+			listener.onError((TimeoutException) cause, TimeUnit.MILLISECONDS.toNanos(fetchTimeout));
+		}
+
+		final TnAuth stale = AuthCache.getStale(authUrl);
+		if (Objects.isNull(stale)) {
+			throw new CompletionException(cause);
+		}
+		return stale;
+	}
+
+	/**
+	 * Reject client address not allowed by IP filter,
+	 * checked before server data is fetched
+	 * @param spec
+	 * @throws SecurityException
+	 */
+	void checkClient(final LoginSpec spec) {
+		if (Objects.nonNull(ipFilter)) {
+			try {
+				ipFilter.check(template.getIpAddress(spec));
+			} catch (SecurityException e) {
+				StageTimer.start(listener).error(e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Generate JSON object for given user. Used for testing / debugging
+	 * @param spec
+	 * @return
+	 * @throws Exception
+	 */
+	public String toJSON(final LoginSpec spec) throws Exception {
+		checkClient(spec);
+		getServerAuth();
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		getLogin(spec, StageTimer.NONE, 0).writeTo(out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Generate access URL for given user
+	 *
+	 * @param spec
+	 * @return
+	 * @throws Exception
+	 */
+	public URI build(final LoginSpec spec) throws Exception {
+		checkClient(spec);
+		return dataToUri(getServerAuth(), spec);
+	}
+
+	/**
+	 * Generate access URL for given user directly into a char target,
+	 * e.g. StringBuilder, CharBuffer or Writer, without creating URI.
+	 * URL is written only after it is encrypted, so a failed build
+	 * writes nothing unless the target itself fails.
+	 *
+	 * @param spec
+	 * @param out
+	 * @return given target
+	 * @throws Exception
+	 */
+	public <A extends Appendable> A writeTo(final LoginSpec spec, final A out) throws Exception {
+		checkClient(spec);
+		write(getServerAuth(), spec, UrlWriter.of(out), 0);
+		return out;
+	}
+
+	/**
+	 * Generate access URL for given user directly into a stream as ASCII bytes,
+	 * e.g. servlet response, without creating URI or intermediate strings.
+	 * URL is written only after it is encrypted, so a failed build
+	 * writes nothing unless the stream itself fails.
+	 *
+	 * @param spec
+	 * @param out
+	 * @return number of bytes written
+	 * @throws Exception
+	 */
+	public int writeTo(final LoginSpec spec, final OutputStream out) throws Exception {
+		checkClient(spec);
+		final UrlWriter writer = UrlWriter.of(out);
+		write(getServerAuth(), spec, writer, 0);
+		return writer.length();
+	}
+
+	/**
+	 * Generate access URL asynchronously.
+	 * Server data is fetched on internal threads,
+	 * encryption is done on given executor (e.g. compute pool or virtual threads).
+	 * Cancelling returned future stops work not started yet.
+	 *
+	 * @param spec
+	 * @param executor used for encryption
+	 * @return
+	 */
+	public CompletableFuture<URI> buildAsync(final LoginSpec spec, final Executor executor) {
+		return async(spec, executor, auth -> dataToUri(auth, spec));
+	}
+
+	/**
+	 * Generate access URL asynchronously directly into a stream as ASCII bytes.
+	 * Server data is fetched on internal threads, only encryption and
+	 * stream write are done on given executor, so a slow server does not
+	 * hold executor threads. URL is written only after it is encrypted.
+	 * Stream is written from executor thread; if encrypt timeout is set,
+	 * returned future may fail before the write is done.
+	 *
+	 * @param spec
+	 * @param out
+	 * @param executor used for encryption and write
+	 * @return number of bytes written
+	 */
+	public CompletableFuture<Integer> writeToAsync(final LoginSpec spec, final OutputStream out, final Executor executor) {
+		return async(spec, executor, auth -> {
+			final UrlWriter writer = UrlWriter.of(out);
+			write(auth, spec, writer, 0);
+			return writer.length();
+		});
+	}
+
+	/**
+	 * Fetch server data without blocking and run task on given executor
+	 */
+	private <T> CompletableFuture<T> async(final LoginSpec spec, final Executor executor, final AuthTask<T> task) {
+
+		final CompletableFuture<T> result = new CompletableFuture<>();
+
+		try {
+			checkClient(spec);
+		} catch (SecurityException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+
+		final CompletableFuture<TnAuth> fetch = getServerAuthAsync();
+
+		fetch.handle(this::orStale).whenComplete((auth, err) -> {
+			if (Objects.nonNull(err)) {
+				result.completeExceptionally(Futures.unwrap(err));
+			} else {
+				runAsync(auth, task, executor, result);
+			}
+		});
+
+		result.whenComplete((value, err) -> {
+			if (result.isCancelled()) {
+				fetch.cancel(false);
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * Server authorization info without blocking caller thread,
+	 * last known data is used on fetch error if inside stale-if-error window
+	 * @return
+	 */
+	CompletableFuture<TnAuth> fetchServerAuthAsync() {
+		return getServerAuthAsync().handle(this::orStale);
+	}
+
+	/**
+	 * Encrypt URL from server data on given executor and complete result,
+	 * unless result is already done
+	 * @param auth
+	 * @param spec
+	 * @param executor
+	 * @param result
+	 */
+	void buildAsync(final TnAuth auth, final LoginSpec spec, final Executor executor, final CompletableFuture<URI> result) {
+		runAsync(auth, data -> dataToUri(data, spec), executor, result);
+	}
+
+	private <T> void runAsync(final TnAuth auth, final AuthTask<T> task, final Executor executor, final CompletableFuture<T> result) {
+
+		if (result.isDone()) {
+			return;
+		}
+
+		final CompletableFuture<T> encrypt = Futures.supply(() -> task.call(auth), executor, result);
+		Futures.within(encrypt, encryptTimeout).whenComplete((value, e) -> {
+			if (Objects.nonNull(e)) {
+				result.completeExceptionally(Futures.unwrap(e));
+			} else {
+				result.complete(value);
+			}
+		});
+	}
+
+	/**
+	 * Work done with fetched server data
+	 */
+	@FunctionalInterface
+	private interface AuthTask<T> {
+		T call(TnAuth auth) throws Exception;
+	}
+
+	/**
+	 * Generate access URLs for multiple users with a single server data fetch.
+	 * Uses common fork-join pool.
+	 *
+	 * @param specs
+	 * @return results in the same order as specs
+	 * @throws Exception if server data is not available
+	 */
+	public List<BuildResult> buildAll(final Collection<LoginSpec> specs) throws Exception {
+		return buildAll(specs, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Generate access URLs for multiple users with a single server data fetch.
+	 * Rejected client addresses are reported as failed results,
+	 * server data is not fetched if all are rejected.
+	 *
+	 * @param specs
+	 * @param executor used to generate URL for every spec
+	 * @return results in the same order as specs
+	 * @throws Exception if server data is not available
+	 */
+	public List<BuildResult> buildAll(final Collection<LoginSpec> specs, final Executor executor) throws Exception {
+
+		final List<CompletableFuture<BuildResult>> futures = new ArrayList<>(specs.size());
+		TnAuth auth = null;
+
+		for (LoginSpec spec : specs) {
+
+			try {
+				checkClient(spec);
+			} catch (SecurityException e) {
+				futures.add(CompletableFuture.completedFuture(new BuildResult(spec, null, e)));
+				continue;
+			}
+
+			if (Objects.isNull(auth)) {
+				auth = getServerAuth();
+			}
+
+			final TnAuth data = auth;
+			futures.add(CompletableFuture.supplyAsync(() -> toResult(data, spec), executor));
+		}
+
+		final List<BuildResult> results = new ArrayList<>(futures.size());
+		for (CompletableFuture<BuildResult> future : futures) {
+			results.add(future.join());
+		}
+
+		return results;
+	}
+
+	/**
+	 * Generate URL for single batch entry
+	 *
+	 * @param auth
+	 * @param spec
+	 * @return
+	 */
+	private BuildResult toResult(final TnAuth auth, final LoginSpec spec) {
+		try {
+			return new BuildResult(spec, dataToUri(auth, spec), null);
+		} catch (Exception e) {
+			return new BuildResult(spec, null, e);
+		}
+	}
+
+	/**
+	 * Generate access URL from server data received by other means.
+	 * Server timestamp from given data is used as URL timestamp
+	 * and expiration base for this call only, the profile server clock
+	 * estimate is not changed. If data has no timestamp, current time is used.
+	 *
+	 * @param data server authorization JSON
+	 * @param spec
+	 * @return
+	 * @throws Exception
+	 */
+	public URI dataToUri(final String data, final LoginSpec spec) throws Exception {
+		checkClient(spec);
+		final StageTimer timer = StageTimer.start(listener);
+		final TnAuth auth = validate(JsonUtil.parse(TnAuth.class, data));
+		timer.mark(BuildListener.Stage.PARSE, data.length());
+		return dataToUri(auth, spec, auth.getTs());
+	}
+
+	URI dataToUri(final TnAuth auth, final LoginSpec spec) throws Exception {
+		return dataToUri(auth, spec, 0);
+	}
+
+	private URI dataToUri(final TnAuth auth, final LoginSpec spec, final long serverTs) throws Exception {
+		final StringBuilder sb = new StringBuilder(URL_CAPACITY);
+		write(auth, spec, UrlWriter.of(sb), serverTs);
+		return URI.create(sb.toString());
+	}
+
+	private void write(final TnAuth auth, final LoginSpec spec, final UrlWriter out, final long serverTs) throws Exception {
+
+		final StageTimer timer = StageTimer.start(listener);
+		final boolean pooled = CryptoContext.acquire();
+
+		try {
+			if (auth.getVer() > 5) {
+				writeECDH(auth, spec, timer, out, serverTs);
+			} else {
+				writeRSA(auth, spec, timer, out, serverTs);
+			}
+		} catch (Exception e) {
+			timer.error(e);
+			throw e;
+		} finally {
+			if (pooled) {
+				CryptoContext.release();
+			}
+		}
+	}
+
+	/**
+	 * Fingerprint verification parameter for given user
+	 * @param spec
+	 * @return
+	 */
+	private String getAppKey(final LoginSpec spec) {
+		return Objects.isNull(spec.getAppID()) ? appKey : toAppKey(spec.getAppID());
+	}
+
+	/**
+	 * Write encrypted URL for GSv6 or newer versions
+	 * @param auth
+	 * @param spec
+	 * @param timer
+	 * @param out
+	 * @param serverTs server timestamp to use, or 0 for current time
+	 * @throws Exception
+	 */
+	private void writeECDH(final TnAuth auth, final LoginSpec spec, final StageTimer timer, final UrlWriter out, final long serverTs) throws Exception {
+
+		final SessionPool.Session session = SessionPool.take(auth.getKey(), timer);
+		final Aes aes = session.getAes();
+
+		final Aes.Payload login = getLogin(spec, timer, serverTs);
+
+		aes.encryptJson(login, timer, terminalUrl, out);
+		out.write(KEY).write(session.getKey());
+		out.write(VERIFY).write(getAppKey(spec));
+		out.write(TYPE);
+
+		timer.mark(BuildListener.Stage.FORMAT, out.length());
+		timer.complete(BuildListener.Path.ECDH, modern, auth);
+	}
+
+	/**
+	 * Write encrypted URL for GSv5 or older versions
+	 * @param auth
+	 * @param spec
+	 * @param timer
+	 * @param out
+	 * @param serverTs server timestamp to use, or 0 for current time
+	 * @throws Exception
+	 */
+	private void writeRSA(final TnAuth auth, final LoginSpec spec, final StageTimer timer, final UrlWriter out, final long serverTs) throws Exception {
+
+		final Aes aesCrypt = Aes.get();
+		final PublicKey pk = RsaUtil.getPublicKey(auth.getKey());
+		timer.mark(BuildListener.Stage.KEYGEN, 0);
+
+		final Aes.Payload login = getLogin(spec, timer, serverTs);
+
+		final String enc = RsaUtil.encrypt(aesCrypt.getSpec(), pk, modern);
+		timer.mark(BuildListener.Stage.WRAP, enc.length());
+
+		aesCrypt.encryptJson(login, timer, auth.getBuild() >= 20220725 ? terminalUrl : liteUrl, out);
+		out.write(KEY).write(enc);
+		out.write(VERIFY).write(getAppKey(spec));
+
+		if (auth.getVer() > 5 || modern) {
+			out.write(TYPE);
+		}
+
+		timer.mark(BuildListener.Stage.FORMAT, out.length());
+		timer.complete(BuildListener.Path.RSA, modern, auth);
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Green Screens server clock offset estimator.
+ * Every auth response is a time sample taken in the middle of the request
+ * round trip (NTP style). Sample with the shortest round trip inside
+ * a small window is used as the offset, and offset change between samples
+ * is tracked as clock drift. Server time is then calculated locally
+ * without any network call.
+ */
+public final class ClockSync {
+
+	private static final ConcurrentHashMap<String, ClockSync> CLOCKS = new ConcurrentHashMap<>();
+
+	private static final int WINDOW = 8;
+
+	// max. drift accepted - 500 ppm
+	private static final double MAX_DRIFT = 0.0005;
+
+	// min. time between samples to calculate drift
+	private static final long DRIFT_SPAN = TimeUnit.MINUTES.toMillis(1);
+
+	private static volatile long interval = TimeUnit.MINUTES.toNanos(1);
+
+	private final long[] offsets = new long[WINDOW];
+	private final long[] delays = new long[WINDOW];
+	private final long[] times = new long[WINDOW];
+
+	// samples stored, up to WINDOW, and next slot to overwrite
+	private int count;
+	private int next;
+
+	private volatile State state;
+
+	/**
+	 * Get clock instance for a given server URL
+	 *
+	 * @param url
+	 * @return
+	 */
+	static ClockSync of(final String url) {
+		return CLOCKS.computeIfAbsent(url, k -> new ClockSync());
+	}
+
+	/**
+	 * Set how often server clock should be re-sampled
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setInterval(final long value, final TimeUnit unit) {
+		interval = unit.toNanos(value);
+	}
+
+	/**
+	 * Register time sample from server response.
+	 *
+	 * @param sent     System.nanoTime() when request is sent
+	 * @param ts       server timestamp in milliseconds
+	 * @param received System.nanoTime() when response is received
+	 */
+	synchronized void sample(final long sent, final long ts, final long received) {
+
+		if (ts <= 0 || received < sent) {
+			return;
+		}
+
+		final long mid = toMillis(sent + (received - sent) / 2);
+		final int idx = next;
+		next = (next + 1) % WINDOW;
+		count = Math.min(count + 1, WINDOW);
+
+		offsets[idx] = ts - mid;
+		delays[idx] = toMillis(received - sent);
+		times[idx] = mid;
+
+		final int len = count;
+		int best = idx;
+		for (int i = 0; i < len; i++) {
+			if (delays[i] < delays[best]) {
+				best = i;
+			}
+		}
+
+		final State prev = state;
+		double drift = 0;
+
+		if (Objects.nonNull(prev)) {
+			drift = prev.drift;
+			final long span = times[best] - prev.time;
+			if (span >= DRIFT_SPAN) {
+				final double measured = (double) (offsets[best] - prev.offset) / span;
+				drift = clamp(drift + (measured - drift) / 4);
+			}
+		}
+
+		state = new State(offsets[best], times[best], drift, System.nanoTime());
+	}
+
+	/**
+	 * Check if clock should be re-sampled
+	 *
+	 * @return
+	 */
+	boolean isStale() {
+		final State s = state;
+		return Objects.isNull(s) || System.nanoTime() - s.sampled > interval;
+	}
+
+	/**
+	 * Estimated current server time in milliseconds
+	 *
+	 * @return
+	 */
+	long now() {
+
+		final State s = state;
+		if (Objects.isNull(s)) {
+			return System.currentTimeMillis();
+		}
+
+		final long local = toMillis(System.nanoTime());
+		return local + s.offset + (long) (s.drift * (local - s.time));
+	}
+
+	private static long toMillis(final long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static double clamp(final double drift) {
+		return Math.max(-MAX_DRIFT, Math.min(MAX_DRIFT, drift));
+	}
+
+	/**
+	 * Immutable offset estimate
+	 */
+	private static final class State {
+
+		// server time minus local monotonic time
+		private final long offset;
+
+		// local monotonic time of the sample
+		private final long time;
+
+		private final double drift;
+
+		// System.nanoTime() when state is created
+		private final long sampled;
+
+		State(final long offset, final long time, final double drift, final long sampled) {
+			this.offset = offset;
+			this.time = time;
+			this.drift = drift;
+			this.sampled = sampled;
+		}
+	}
+}
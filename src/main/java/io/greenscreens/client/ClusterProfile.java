@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Green Screens Web Terminal Connection generator for multiple server nodes.
+ * Every node is a {@link BuilderProfile} with own server data, key and clock state.
+ * Server data fetch latency and errors are tracked per node, and every request
+ * is routed to the node selected by {@link Strategy}. Only server data fetch and
+ * transport errors count against a node; nodes failing repeatedly are skipped
+ * for a backoff period and a failed fetch is retried once on another node.
+ * Local errors, e.g. rejected client address, invalid login data or encryption
+ * failure, are thrown straight away.
+ * Created with {@link Builder#toCluster(Strategy, String...)}, safe to use from any number of threads.
+ */
+public final class ClusterProfile {
+
+	/**
+	 * Node selection strategy
+	 */
+	public enum Strategy {
+		/** node with the lowest latency and load */
+		LEAST_LATENCY,
+		/** better of two random nodes, spreads load evenly */
+		TWO_CHOICES
+	}
+
+	// consecutive errors before node is skipped
+	private static final int MAX_ERRORS = 3;
+
+	private static final long BACKOFF = TimeUnit.SECONDS.toNanos(5);
+	private static final long MAX_BACKOFF = TimeUnit.MINUTES.toNanos(2);
+
+	private final Strategy strategy;
+	private final List<Node> nodes;
+
+	ClusterProfile(final Strategy strategy, final List<Function<BuildListener, BuilderProfile>> factories, final BuildListener listener) {
+		super();
+		this.strategy = Objects.isNull(strategy) ? Strategy.TWO_CHOICES : strategy;
+		final List<Node> list = new ArrayList<>(factories.size());
+		for (Function<BuildListener, BuilderProfile> factory : factories) {
+			list.add(new Node(factory, listener));
+		}
+		this.nodes = Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Server node addresses
+	 * @return
+	 */
+	public List<String> getUrls() {
+		final List<String> urls = new ArrayList<>(nodes.size());
+		for (Node node : nodes) {
+			urls.add(node.profile.getUrl());
+		}
+		return urls;
+	}
+
+	/**
+	 * Generate access URL for given user on selected node
+	 *
+	 * @param spec
+	 * @return
+	 * @throws Exception if URL generation failed on all tried nodes
+	 */
+	public URI build(final LoginSpec spec) throws Exception {
+
+		checkClient(spec);
+
+		Node node = select(null);
+		TnAuth auth;
+
+		try {
+			auth = node.fetch();
+		} catch (Exception e) {
+			final Node other = select(node);
+			if (other == node) {
+				throw e;
+			}
+			node = other;
+			auth = node.fetch();
+		}
+
+		return node.build(auth, spec);
+	}
+
+	/**
+	 * Generate access URL asynchronously on selected node
+	 *
+	 * @param spec
+	 * @param executor used for encryption
+	 * @return
+	 */
+	public CompletableFuture<URI> buildAsync(final LoginSpec spec, final Executor executor) {
+
+		final CompletableFuture<URI> result = new CompletableFuture<>();
+
+		try {
+			checkClient(spec);
+		} catch (SecurityException e) {
+			result.completeExceptionally(e);
+			return result;
+		}
+
+		final Node node = select(null);
+
+		node.fetchAsync().whenComplete((auth, err) -> {
+
+			if (Objects.isNull(err)) {
+				node.buildAsync(auth, spec, executor, result);
+				return;
+			}
+
+			final Node other = select(node);
+			if (other == node || result.isDone()) {
+				result.completeExceptionally(Futures.unwrap(err));
+				return;
+			}
+
+			other.fetchAsync().whenComplete((retry, e) -> {
+				if (Objects.isNull(e)) {
+					other.buildAsync(retry, spec, executor, result);
+				} else {
+					result.completeExceptionally(Futures.unwrap(e));
+				}
+			});
+		});
+
+		return result;
+	}
+
+	/**
+	 * Reject client address before any node is used,
+	 * all nodes share the same IP filter
+	 * @param spec
+	 * @throws SecurityException
+	 */
+	private void checkClient(final LoginSpec spec) {
+		nodes.get(0).profile.checkClient(spec);
+	}
+
+	/**
+	 * Select node for a request
+	 *
+	 * @param exclude node already tried, or null
+	 * @return
+	 */
+	private Node select(final Node exclude) {
+
+		final long now = System.nanoTime();
+		final List<Node> available = new ArrayList<>(nodes.size());
+
+		for (Node node : nodes) {
+			if (node != exclude && node.isAvailable(now)) {
+				available.add(node);
+			}
+		}
+
+		if (available.isEmpty()) {
+			for (Node node : nodes) {
+				if (node != exclude) {
+					available.add(node);
+				}
+			}
+		}
+
+		if (available.isEmpty()) {
+			return exclude;
+		}
+
+		if (available.size() == 1) {
+			return available.get(0);
+		}
+
+		if (strategy == Strategy.TWO_CHOICES) {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			final int first = random.nextInt(available.size());
+			final int second = (first + 1 + random.nextInt(available.size() - 1)) % available.size();
+			final Node a = available.get(first);
+			final Node b = available.get(second);
+			return a.score() <= b.score() ? a : b;
+		}
+
+		Node best = available.get(0);
+		for (Node node : available) {
+			if (node.score() < best.score()) {
+				best = node;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Single server node with latency and error tracking
+	 */
+	private static final class Node implements BuildListener {
+
+		private final BuildListener listener;
+		private final BuilderProfile profile;
+
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger errors = new AtomicInteger();
+
+		// server data fetch latency EWMA in nanoseconds
+		private volatile double latency;
+		private volatile long blockedUntil;
+
+		Node(final Function<BuildListener, BuilderProfile> factory, final BuildListener listener) {
+			this.listener = Objects.isNull(listener) ? BuildListener.NONE : listener;
+			this.profile = factory.apply(this);
+		}
+
+		/**
+		 * Server data of this node, errors are counted against the node
+		 * @return
+		 * @throws Exception
+		 */
+		TnAuth fetch() throws Exception {
+			active.incrementAndGet();
+			try {
+				final TnAuth auth = profile.getServerAuth();
+				success();
+				return auth;
+			} catch (Exception e) {
+				failure();
+				throw e;
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		CompletableFuture<TnAuth> fetchAsync() {
+			active.incrementAndGet();
+			return profile.fetchServerAuthAsync().whenComplete((auth, err) -> {
+				active.decrementAndGet();
+				if (Objects.isNull(err)) {
+					success();
+				} else {
+					failure();
+				}
+			});
+		}
+
+		/**
+		 * Local URL encryption, errors are not counted against the node
+		 * @param auth
+		 * @param spec
+		 * @return
+		 * @throws Exception
+		 */
+		URI build(final TnAuth auth, final LoginSpec spec) throws Exception {
+			active.incrementAndGet();
+			try {
+				return profile.dataToUri(auth, spec);
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		void buildAsync(final TnAuth auth, final LoginSpec spec, final Executor executor, final CompletableFuture<URI> result) {
+			active.incrementAndGet();
+			result.whenComplete((uri, err) -> active.decrementAndGet());
+			profile.buildAsync(auth, spec, executor, result);
+		}
+
+		boolean isAvailable(final long now) {
+			return errors.get() < MAX_ERRORS || now - blockedUntil >= 0;
+		}
+
+		/**
+		 * Lower is better; latency weighted by requests in progress
+		 * @return
+		 */
+		double score() {
+			return (latency + 1) * (active.get() + 1);
+		}
+
+		private void success() {
+			errors.set(0);
+		}
+
+		private void failure() {
+			final int count = errors.incrementAndGet();
+			if (count >= MAX_ERRORS) {
+				final long backoff = Math.min(MAX_BACKOFF, BACKOFF << Math.min(count - MAX_ERRORS, 5));
+				blockedUntil = System.nanoTime() + backoff;
+			}
+		}
+
+		@Override
+		public void onStage(final Stage stage, final long nanos, final int bytes) {
+			if (stage == Stage.FETCH) {
+				final double current = latency;
+				latency = current == 0 ? nanos : current + (nanos - current) / 4;
+			}
+			listener.onStage(stage, nanos, bytes);
+		}
+
+		@Override
+		public void onComplete(final Path path, final boolean modern, final int ver, final int build, final long nanos) {
+			listener.onComplete(path, modern, ver, build, nanos);
+		}
+
+		@Override
+		public void onError(final Exception error, final long nanos) {
+			listener.onError(error, nanos);
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread confined set of crypto engines used to generate URL.
+ * JCE engines are not thread safe; instead of sharing one instance behind a lock,
+ * every thread gets own engines created on first use and reused afterwards,
+ * which also avoids provider lookup on every call.
+ * Short lived threads, e.g. virtual threads, would create a new context
+ * for every request; they borrow one from a small shared pool
+ * for the duration of a single URL build instead.
+ */
+final class CryptoContext {
+
+	private static final Logger LOG = LoggerFactory.getLogger(CryptoContext.class);
+
+	private static final String AES_MODE = "AES/CTR/NoPadding";
+	private static final String EC_ALGO = "ECDH";
+	private static final String EC_CURVE = "P-256"; // "prime256v1";
+	private static final String RSA_ALGO = "RSA";
+	private static final String RSA_MODE = "RSA/ECB/PKCS1Padding";
+	private static final String WEB_MODE = "RSA/NONE/OAEPWithSHA256AndMGF1Padding";
+	private static final String WEB_MODE_JCA = "RSA/NONE/OAEPWithSHA-256AndMGF1Padding";
+
+	private static final ThreadLocal<CryptoContext> CONTEXT = new ThreadLocal<>();
+
+	// contexts released by short lived threads
+	private static final ConcurrentLinkedQueue<CryptoContext> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger POOLED = new AtomicInteger();
+	private static final int MAX_POOLED = Runtime.getRuntime().availableProcessors() * 2;
+
+	// Thread.isVirtual() on Java 21+, null otherwise
+	private static final MethodHandle IS_VIRTUAL = findIsVirtual();
+
+	private final RandomSource random;
+
+	private Cipher aes;
+	private Cipher rsa;
+	private Cipher rsaWeb;
+	private KeyAgreement agreement;
+	private KeyFactory ecFactory;
+	private KeyFactory rsaFactory;
+	private KeyPairGenerator ecGenerator;
+	private PayloadBuffer payload;
+
+	private CryptoContext() throws GeneralSecurityException {
+		super();
+		SecurityProvider.initialize();
+		random = new RandomSource();
+	}
+
+	/**
+	 * Get crypto context bound to the current thread
+	 *
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	static CryptoContext get() throws GeneralSecurityException {
+		CryptoContext ctx = CONTEXT.get();
+		if (Objects.isNull(ctx)) {
+			ctx = new CryptoContext();
+			CONTEXT.set(ctx);
+		}
+		return ctx;
+	}
+
+	/**
+	 * Bind a pooled context to the current thread for a single URL build,
+	 * if thread is virtual and has no context yet.
+	 * Platform threads keep own context and are not affected.
+	 *
+	 * @return true if context is bound and must be returned with {@link #release()}
+	 * @throws GeneralSecurityException
+	 */
+	static boolean acquire() throws GeneralSecurityException {
+
+		if (Objects.nonNull(CONTEXT.get()) || !isVirtual()) {
+			return false;
+		}
+
+		CryptoContext ctx = POOL.poll();
+		if (Objects.isNull(ctx)) {
+			ctx = new CryptoContext();
+		} else {
+			POOLED.decrementAndGet();
+		}
+
+		CONTEXT.set(ctx);
+		return true;
+	}
+
+	/**
+	 * Unbind context acquired with {@link #acquire()} and return it to the pool
+	 */
+	static void release() {
+
+		final CryptoContext ctx = CONTEXT.get();
+		CONTEXT.remove();
+
+		if (Objects.isNull(ctx)) {
+			return;
+		}
+
+		if (POOLED.incrementAndGet() <= MAX_POOLED) {
+			POOL.offer(ctx);
+		} else {
+			POOLED.decrementAndGet();
+		}
+	}
+
+	private static boolean isVirtual() {
+		if (Objects.isNull(IS_VIRTUAL)) {
+			return false;
+		}
+		try {
+			return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	private static MethodHandle findIsVirtual() {
+		try {
+			return MethodHandles.publicLookup().findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	RandomSource getRandom() {
+		return random;
+	}
+
+	/**
+	 * AES engine used for URL data encryption
+	 *
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	Cipher getAes() throws GeneralSecurityException {
+		if (Objects.isNull(aes)) {
+			aes = Cipher.getInstance(AES_MODE);
+		}
+		return aes;
+	}
+
+	/**
+	 * RSA engine used to encrypt AES key for GSv5 or older
+	 *
+	 * @param modern if true, use OAEP padding as in web browser
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	Cipher getRsa(final boolean modern) throws GeneralSecurityException {
+
+		if (!modern) {
+			if (Objects.isNull(rsa)) {
+				rsa = Cipher.getInstance(RSA_MODE);
+			}
+			return rsa;
+		}
+
+		if (Objects.isNull(rsaWeb)) {
+			try {
+				rsaWeb = Cipher.getInstance(WEB_MODE, SecurityProvider.provider());
+			} catch (Exception e) {
+				final String msg = Utils.toMessage(e);
+				LOG.error(msg);
+				LOG.debug(msg, e);
+				rsaWeb = Cipher.getInstance(WEB_MODE_JCA, SecurityProvider.provider());
+			}
+		}
+		return rsaWeb;
+	}
+
+	KeyFactory getRsaFactory() throws GeneralSecurityException {
+		if (Objects.isNull(rsaFactory)) {
+			rsaFactory = KeyFactory.getInstance(RSA_ALGO);
+		}
+		return rsaFactory;
+	}
+
+	KeyFactory getEcFactory() throws GeneralSecurityException {
+		if (Objects.isNull(ecFactory)) {
+			ecFactory = KeyFactory.getInstance(EC_ALGO, SecurityProvider.provider());
+		}
+		return ecFactory;
+	}
+
+	KeyAgreement getAgreement() throws GeneralSecurityException {
+		if (Objects.isNull(agreement)) {
+			agreement = KeyAgreement.getInstance(EC_ALGO, SecurityProvider.provider());
+		}
+		return agreement;
+	}
+
+	/**
+	 * Reusable buffer for URL payload encryption
+	 *
+	 * @return
+	 */
+	PayloadBuffer getPayload() {
+		if (Objects.isNull(payload)) {
+			payload = new PayloadBuffer();
+		}
+		return payload.reset();
+	}
+
+	/**
+	 * ECDH key pair generator for GSv6+
+	 *
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	KeyPairGenerator getEcGenerator() throws GeneralSecurityException {
+		if (Objects.isNull(ecGenerator)) {
+			ecGenerator = KeyPairGenerator.getInstance(EC_ALGO, SecurityProvider.provider());
+			ecGenerator.initialize(new ECGenParameterSpec(EC_CURVE), new SecureRandom());
+		}
+		return ecGenerator;
+	}
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * CompletableFuture helpers for asynchronous URL generation (Java 8 compatible)
+ */
+enum Futures {
+	;
+
+	private static final ScheduledExecutorService SCHEDULER;
+
+	static {
+		final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+			final Thread thread = new Thread(r, "gs-timeout");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		SCHEDULER = scheduler;
+	}
+
+	/**
+	 * Complete future with TimeoutException if not done in time.
+	 * 
+	 * @param <T>
+	 * @param future
+	 * @param millis zero for no timeout
+	 * @return the same future
+	 */
+	static <T> CompletableFuture<T> within(final CompletableFuture<T> future, final long millis) {
+
+		if (millis <= 0 || future.isDone()) {
+			return future;
+		}
+
+		final ScheduledFuture<?> timer = SCHEDULER.schedule(() -> {
+			future.completeExceptionally(new TimeoutException(String.format("Timeout after %d ms", millis)));
+		}, millis, TimeUnit.MILLISECONDS);
+
+		future.whenComplete((v, e) -> timer.cancel(false));
+		return future;
+	}
+
+	/**
+	 * Run task after delay on internal scheduler thread
+	 * 
+	 * @param task short, non-blocking task
+	 * @param nanos
+	 */
+	static void schedule(final Runnable task, final long nanos) {
+		SCHEDULER.schedule(task, nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Wait for future result and unwrap the original error
+	 * 
+	 * @param <T>
+	 * @param future
+	 * @return
+	 * @throws Exception
+	 */
+	static <T> T await(final CompletableFuture<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Run task on executor unless guard future is already done (e.g. cancelled)
+	 * 
+	 * @param <T>
+	 * @param task
+	 * @param executor
+	 * @param guard
+	 * @return
+	 */
+	static <T> CompletableFuture<T> supply(final Callable<T> task, final Executor executor, final CompletableFuture<?> guard) {
+
+		final CompletableFuture<T> future = new CompletableFuture<>();
+
+		try {
+			executor.execute(() -> {
+				if (guard.isDone() || future.isDone()) {
+					future.cancel(false);
+					return;
+				}
+				try {
+					future.complete(task.call());
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Get original exception from future wrappers
+	 * 
+	 * @param e
+	 * @return
+	 */
+	static Throwable unwrap(final Throwable e) {
+		Throwable err = e;
+		while ((err instanceof CompletionException || err instanceof ExecutionException) && Objects.nonNull(err.getCause())) {
+			err = err.getCause();
+		}
+		return err;
+	}
+
+}
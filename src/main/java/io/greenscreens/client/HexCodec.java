@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table driven lowercase hex encoder / decoder.
+ * Writes directly into caller provided targets without intermediate objects,
+ * as encrypted URL data doubles in size when hex encoded.
+ */
+enum HexCodec {
+	;
+
+	private static final byte[] DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	// byte to two hex digits, high digit in upper 8 bits
+	private static final char[] ENCODE = new char[256];
+
+	// ASCII char to nibble value, -1 for invalid
+	private static final byte[] DECODE = new byte[128];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			ENCODE[i] = (char) (DIGITS[i >>> 4] << 8 | DIGITS[i & 0x0F]);
+		}
+
+		Arrays.fill(DECODE, (byte) -1);
+		for (int i = 0; i < 10; i++) {
+			DECODE['0' + i] = (byte) i;
+		}
+		for (int i = 0; i < 6; i++) {
+			DECODE['a' + i] = (byte) (10 + i);
+			DECODE['A' + i] = (byte) (10 + i);
+		}
+	}
+
+	/**
+	 * Length of hex encoded data
+	 *
+	 * @param len
+	 * @return
+	 */
+	static int encodedLength(final int len) {
+		return len << 1;
+	}
+
+	/**
+	 * Encode bytes into ASCII hex digits
+	 *
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param dst
+	 * @param pos start position in target
+	 * @return position after last written digit
+	 */
+	static int encode(final byte[] src, final int off, final int len, final byte[] dst, final int pos) {
+		int p = pos;
+		for (int i = off, end = off + len; i < end; i++) {
+			final char c = ENCODE[src[i] & 0xFF];
+			dst[p++] = (byte) (c >>> 8);
+			dst[p++] = (byte) c;
+		}
+		return p;
+	}
+
+	/**
+	 * Encode bytes into hex chars
+	 *
+	 * @param src
+	 * @param off
+	 * @param len
+	 * @param dst
+	 * @param pos start position in target
+	 * @return position after last written char
+	 */
+	static int encode(final byte[] src, final int off, final int len, final char[] dst, final int pos) {
+		int p = pos;
+		for (int i = off, end = off + len; i < end; i++) {
+			final char c = ENCODE[src[i] & 0xFF];
+			dst[p++] = (char) (c >>> 8);
+			dst[p++] = (char) (c & 0xFF);
+		}
+		return p;
+	}
+
+	/**
+	 * Encode remaining source bytes into ASCII hex digits
+	 *
+	 * @param src
+	 * @param dst
+	 */
+	static void encode(final ByteBuffer src, final ByteBuffer dst) {
+		while (src.hasRemaining()) {
+			final char c = ENCODE[src.get() & 0xFF];
+			dst.put((byte) (c >>> 8));
+			dst.put((byte) c);
+		}
+	}
+
+	/**
+	 * Encode bytes to hex string
+	 *
+	 * @param data
+	 * @return
+	 */
+	static String toHex(final byte[] data) {
+		return toHex(data, 0, data.length);
+	}
+
+	static String toHex(final byte[] data, final int off, final int len) {
+		final byte[] buffer = new byte[encodedLength(len)];
+		encode(data, off, len, buffer, 0);
+		return new String(buffer, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Decode hex digits into bytes. Odd trailing digit is ignored.
+	 *
+	 * @param src
+	 * @param off
+	 * @param len number of hex chars
+	 * @param dst
+	 * @param pos start position in target
+	 * @return position after last written byte
+	 */
+	static int decode(final CharSequence src, final int off, final int len, final byte[] dst, final int pos) {
+		int p = pos;
+		for (int i = off, end = off + (len & ~1); i < end; i += 2) {
+			dst[p++] = (byte) (nibble(src.charAt(i)) << 4 | nibble(src.charAt(i + 1)));
+		}
+		return p;
+	}
+
+	/**
+	 * Decode hex digits into bytes. Odd trailing digit is ignored.
+	 *
+	 * @param src
+	 * @param off
+	 * @param len number of hex chars
+	 * @param dst
+	 * @param pos start position in target
+	 * @return position after last written byte
+	 */
+	static int decode(final char[] src, final int off, final int len, final byte[] dst, final int pos) {
+		int p = pos;
+		for (int i = off, end = off + (len & ~1); i < end; i += 2) {
+			dst[p++] = (byte) (nibble(src[i]) << 4 | nibble(src[i + 1]));
+		}
+		return p;
+	}
+
+	/**
+	 * Decode remaining ASCII hex digits. Odd trailing digit is left in source.
+	 *
+	 * @param src
+	 * @param dst
+	 */
+	static void decode(final ByteBuffer src, final ByteBuffer dst) {
+		while (src.remaining() > 1) {
+			dst.put((byte) (nibble(src.get()) << 4 | nibble(src.get())));
+		}
+	}
+
+	/**
+	 * Decode hex string to bytes
+	 *
+	 * @param data
+	 * @return
+	 */
+	static byte[] fromHex(final CharSequence data) {
+		final byte[] buffer = new byte[data.length() >> 1];
+		decode(data, 0, data.length(), buffer, 0);
+		return buffer;
+	}
+
+	private static int nibble(final int c) {
+		final int v = c >= 0 && c < 128 ? DECODE[c] : -1;
+		if (v < 0) {
+			throw new IllegalArgumentException("Invalid hex character: " + (char) c);
+		}
+		return v;
+	}
+
+}
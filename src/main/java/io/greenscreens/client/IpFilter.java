@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Client IP address allow / deny filter.
+ * Set with {@link Builder#setIpFilter(IpFilter)}, it rejects requests
+ * before server data is fetched or any key agreement or encryption is done.
+ * Rules are IPv4 and IPv6 CIDR ranges compiled into prefix tries,
+ * deny rules take precedence; if allow rules exist, address must match one.
+ * Rules can be replaced at any time, file based filter is reloaded
+ * automatically when file is changed.
+ */
+public final class IpFilter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(IpFilter.class);
+
+	private static final long CHECK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+	private final Path file;
+	private final AtomicLong checked = new AtomicLong();
+
+	private volatile Rules rules;
+	private volatile long modified;
+
+	private IpFilter(final Path file, final Rules rules) {
+		super();
+		this.file = file;
+		this.rules = rules;
+		this.checked.set(System.nanoTime());
+	}
+
+	/**
+	 * Create filter from CIDR lists
+	 *
+	 * @param allow ranges allowed, empty to allow all not denied
+	 * @param deny ranges denied
+	 * @return
+	 * @throws IllegalArgumentException if any range is invalid
+	 */
+	public static IpFilter of(final Collection<String> allow, final Collection<String> deny) {
+		return new IpFilter(null, new Rules(allow, deny));
+	}
+
+	/**
+	 * Create filter from rules file, reloaded when file is changed.
+	 * Every line is a rule in form "allow CIDR" or "deny CIDR",
+	 * empty lines and lines starting with # are ignored.
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException if file can not be read
+	 * @throws IllegalArgumentException if any rule is invalid
+	 */
+	public static IpFilter load(final Path file) throws IOException {
+		final long modified = Files.getLastModifiedTime(file).toMillis();
+		final IpFilter filter = new IpFilter(file, read(file));
+		filter.modified = modified;
+		return filter;
+	}
+
+	/**
+	 * Replace filter rules
+	 *
+	 * @param allow ranges allowed, empty to allow all not denied
+	 * @param deny ranges denied
+	 * @throws IllegalArgumentException if any range is invalid, current rules are kept
+	 */
+	public void reload(final Collection<String> allow, final Collection<String> deny) {
+		rules = new Rules(allow, deny);
+	}
+
+	/**
+	 * Reload rules from file, if filter is file based
+	 *
+	 * @throws IOException if file can not be read, current rules are kept
+	 * @throws IllegalArgumentException if any rule is invalid, current rules are kept
+	 */
+	public void reload() throws IOException {
+		if (Objects.nonNull(file)) {
+			final long time = Files.getLastModifiedTime(file).toMillis();
+			rules = read(file);
+			modified = time;
+		}
+	}
+
+	/**
+	 * Check if client address is allowed.
+	 * Missing or invalid address is allowed only when there are no allow rules.
+	 *
+	 * @param ip
+	 * @return
+	 */
+	public boolean isAllowed(final CharSequence ip) {
+
+		checkFile();
+
+		final Rules current = rules;
+		final long[] addr = new long[2];
+
+		if (Objects.isNull(ip) || !IpUtils.parse(ip, 0, ip.length(), addr)) {
+			return current.allow.size() == 0;
+		}
+
+		if (current.deny.contains(addr[0], addr[1])) {
+			return false;
+		}
+
+		return current.allow.size() == 0 || current.allow.contains(addr[0], addr[1]);
+	}
+
+	/**
+	 * Reject client address not allowed
+	 *
+	 * @param ip
+	 * @throws SecurityException
+	 */
+	void check(final String ip) {
+		if (!isAllowed(ip)) {
+			throw new SecurityException("Client IP address not allowed: " + ip);
+		}
+	}
+
+	/**
+	 * Reload rules if file changed, checked by a single caller
+	 * at most once per interval
+	 */
+	private void checkFile() {
+
+		if (Objects.isNull(file)) {
+			return;
+		}
+
+		final long now = System.nanoTime();
+		final long last = checked.get();
+
+		if (now - last < CHECK_INTERVAL || !checked.compareAndSet(last, now)) {
+			return;
+		}
+
+		try {
+			if (Files.getLastModifiedTime(file).toMillis() != modified) {
+				reload();
+			}
+		} catch (Exception e) {
+			final String msg = Utils.toMessage(e);
+			LOG.error(msg);
+			LOG.debug(msg, e);
+		}
+	}
+
+	private static Rules read(final Path file) throws IOException {
+
+		final List<String> allow = new ArrayList<>();
+		final List<String> deny = new ArrayList<>();
+
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+
+			final String value = line.trim();
+			if (value.isEmpty() || value.startsWith("#")) {
+				continue;
+			}
+
+			final String[] parts = value.split("\\s+", 2);
+			if (parts.length == 2 && "allow".equalsIgnoreCase(parts[0])) {
+				allow.add(parts[1]);
+			} else if (parts.length == 2 && "deny".equalsIgnoreCase(parts[0])) {
+				deny.add(parts[1]);
+			} else {
+				throw new IllegalArgumentException("Invalid IP filter rule: " + value);
+			}
+		}
+
+		return new Rules(allow, deny);
+	}
+
+	/**
+	 * Immutable compiled rules
+	 */
+	private static final class Rules {
+
+		private final IpTrie allow;
+		private final IpTrie deny;
+
+		Rules(final Collection<String> allow, final Collection<String> deny) {
+			this.allow = IpTrie.compile(Objects.isNull(allow) ? Collections.<String>emptyList() : allow);
+			this.deny = IpTrie.compile(Objects.isNull(deny) ? Collections.<String>emptyList() : deny);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Objects;
+
+/**
+ * Binary prefix trie of IPv4 and IPv6 CIDR ranges.
+ * Addresses are stored as 128 bit values, IPv4 as IPv4-mapped IPv6 (::ffff:0:0/96),
+ * so a single trie serves both families. Lookup walks at most 128 nodes
+ * without any allocation. Trie is not modified after it is compiled,
+ * so it is safe to share between threads once published.
+ */
+final class IpTrie {
+
+	private final Node root = new Node();
+	private int size;
+
+	private IpTrie() {
+		super();
+	}
+
+	/**
+	 * Compile trie from CIDR ranges, e.g. 10.0.0.0/8, fc00::/7 or a single address
+	 *
+	 * @param cidrs
+	 * @return
+	 * @throws IllegalArgumentException if any range is invalid
+	 */
+	static IpTrie compile(final Iterable<String> cidrs) {
+		final IpTrie trie = new IpTrie();
+		final long[] addr = new long[2];
+		for (String cidr : cidrs) {
+			if (Objects.nonNull(cidr) && cidr.trim().length() > 0) {
+				trie.add(cidr.trim(), addr);
+			}
+		}
+		return trie;
+	}
+
+	/**
+	 * Number of ranges in trie
+	 * @return
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Check if parsed address is inside any range
+	 *
+	 * @param hi upper 64 bits of address
+	 * @param lo lower 64 bits of address
+	 * @return
+	 */
+	boolean contains(final long hi, final long lo) {
+
+		Node node = root;
+
+		for (int i = 0; i < 128; i++) {
+			if (node.match) {
+				return true;
+			}
+			node = bit(hi, lo, i) == 0 ? node.zero : node.one;
+			if (Objects.isNull(node)) {
+				return false;
+			}
+		}
+
+		return node.match;
+	}
+
+	/**
+	 * Check if address is inside any range
+	 *
+	 * @param ip
+	 * @return false if address is not valid
+	 */
+	boolean contains(final CharSequence ip) {
+		final long[] addr = new long[2];
+		return IpUtils.parse(ip, 0, ip.length(), addr) && contains(addr[0], addr[1]);
+	}
+
+	private void add(final String cidr, final long[] addr) {
+
+		final int slash = cidr.indexOf('/');
+		final int end = slash < 0 ? cidr.length() : slash;
+
+		if (!IpUtils.parse(cidr, 0, end, addr)) {
+			throw new IllegalArgumentException("Invalid IP range: " + cidr);
+		}
+
+		final boolean ipv4 = cidr.lastIndexOf(':', end) < 0;
+		final int max = ipv4 ? 32 : 128;
+		int bits = max;
+
+		if (slash >= 0) {
+			try {
+				bits = Integer.parseInt(cidr.substring(slash + 1).trim());
+			} catch (NumberFormatException e) {
+				bits = -1;
+			}
+			if (bits < 0 || bits > max) {
+				throw new IllegalArgumentException("Invalid IP range: " + cidr);
+			}
+		}
+
+		if (ipv4) {
+			bits += 96;
+		}
+
+		Node node = root;
+		for (int i = 0; i < bits; i++) {
+			if (bit(addr[0], addr[1], i) == 0) {
+				if (Objects.isNull(node.zero)) {
+					node.zero = new Node();
+				}
+				node = node.zero;
+			} else {
+				if (Objects.isNull(node.one)) {
+					node.one = new Node();
+				}
+				node = node.one;
+			}
+		}
+
+		node.match = true;
+		size++;
+	}
+
+	private static long bit(final long hi, final long lo, final int i) {
+		return i < 64 ? (hi >>> (63 - i)) & 1 : (lo >>> (127 - i)) & 1;
+	}
+
+	private static final class Node {
+		private Node zero;
+		private Node one;
+		private boolean match;
+	}
+}
@@ -3,94 +3,483 @@
  */
 package io.greenscreens.client;
 
+import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.Objects;
-import java.util.StringTokenizer;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
 
 /**
- * Utility for handling and parsing IP address
+ * Utility for handling and parsing IP address.
+ * Forwarding headers are accepted only from trusted proxies.
+ * Forwarding chain is walked from the right, the first address
+ * not belonging to a trusted proxy is the client address,
+ * so client can not spoof its address by sending headers.
  */
 public enum IpUtils {
 	;
 
-	private static final String _255 = "(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)";	
-	private static final Pattern pattern = Pattern.compile("^(?:" + _255 + "\\.){3}" + _255 + "$");
-	
+	private static final String FORWARDED = "Forwarded";
+	private static final String X_FORWARDED_FOR = "X-Forwarded-For";
+
+	/**
+	 * Headers with a single client address set by some proxies
+	 */
+	private static final String[] HEADERS_TO_TRY = {
+			"X-Real-IP", "Proxy-Client-IP", "WL-Proxy-Client-IP", "X-Cluster-Client-IP", "Client-IP"
+	};
+
 	/**
-	 * HTTP headers that might contain IP address
+	 * Loopback and private networks
 	 */
-	private static final String[] HEADERS_TO_TRY = { 
-			"X-Forwarded-For", " X-Real-IP", "Proxy-Client-IP", "WL-Proxy-Client-IP",
-			"HTTP_X_FORWARDED_FOR", "HTTP_X_FORWARDED", "HTTP_X_CLUSTER_CLIENT_IP", "HTTP_CLIENT_IP",
-			"HTTP_FORWARDED_FOR", "HTTP_FORWARDED", "HTTP_VIA", "REMOTE_ADDR" 
+	private static final String[] DEFAULT_PROXIES = {
+			"127.0.0.0/8", "10.0.0.0/8", "172.16.0.0/12", "192.168.0.0/16", "::1", "fc00::/7"
 	};
 
+	private static volatile IpTrie proxies = IpTrie.compile(Arrays.asList(DEFAULT_PROXIES));
+
+	/**
+	 * Set proxies allowed to forward client address, replacing defaults.
+	 * Default are loopback and private networks. No argument disables
+	 * forwarding headers, so remote address is always used.
+	 *
+	 * @param cidrs IPv4 or IPv6 address or range, e.g. 10.0.0.0/8 or 2001:db8::/32
+	 * @throws IllegalArgumentException if any range is invalid
+	 */
+	public static void setTrustedProxies(final String... cidrs) {
+		proxies = IpTrie.compile(Arrays.asList(cidrs));
+	}
+
 	/**
-	 * Check if IP address is in valid form
+	 * Check if value is a valid IPv4 or IPv6 address
+	 *
 	 * @param ip
 	 * @return
 	 */
-	private static boolean isIPv4Valid(String ip) {
-		return pattern.matcher(ip).matches();
+	public static boolean isValid(final CharSequence ip) {
+		return Objects.nonNull(ip) && parse(ip, 0, ip.length(), new long[2]);
 	}
 
 	/**
-	 * Search for IP address in string
-	 * @param ip
+	 * Get IP address from HttpRequest
+	 * @param request
 	 * @return
 	 */
-	private static String detectIP(String ip) {
-
-		String tmp = null;
-		boolean found = false;
-
-		final StringTokenizer tokenizer = new StringTokenizer(ip, ",");
-		
-		while (tokenizer.hasMoreTokens()) {
-		
-			tmp = tokenizer.nextToken().trim();
-			
-			if (isIPv4Valid(tmp)) {
-				found = true;
+	public static String getClientIpAddress(final HttpServletRequest request) {
+
+		final String remote = request.getRemoteAddr();
+		final IpTrie trusted = proxies;
+		final long[] addr = new long[2];
+
+		if (Objects.isNull(remote) || !parse(remote, 0, remote.length(), addr) || !trusted.contains(addr[0], addr[1])) {
+			return remote;
+		}
+
+		String ip = getHeader(request, FORWARDED);
+		if (Objects.nonNull(ip)) {
+			ip = detectIP(ip, true, trusted, addr);
+			return Objects.isNull(ip) ? remote : ip;
+		}
+
+		ip = getHeader(request, X_FORWARDED_FOR);
+		if (Objects.nonNull(ip)) {
+			ip = detectIP(ip, false, trusted, addr);
+			return Objects.isNull(ip) ? remote : ip;
+		}
+
+		for (String header : HEADERS_TO_TRY) {
+			ip = request.getHeader(header);
+			if (Objects.nonNull(ip)) {
+				ip = ip.trim();
+				if (parse(ip, 0, ip.length(), addr)) {
+					return ip;
+				}
+			}
+		}
+
+		return remote;
+	}
+
+	/**
+	 * All values of a header joined as a single list
+	 *
+	 * @param request
+	 * @param name
+	 * @return
+	 */
+	private static String getHeader(final HttpServletRequest request, final String name) {
+
+		final Enumeration<String> values = request.getHeaders(name);
+		if (Objects.isNull(values) || !values.hasMoreElements()) {
+			return null;
+		}
+
+		final String first = values.nextElement();
+		if (!values.hasMoreElements()) {
+			return first;
+		}
+
+		final StringBuilder sb = new StringBuilder(first);
+		while (values.hasMoreElements()) {
+			sb.append(',').append(values.nextElement());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Walk forwarding chain from the right, skipping trusted proxies.
+	 * Walk stops at the first untrusted or invalid entry.
+	 *
+	 * @param chain X-Forwarded-For or RFC 7239 Forwarded header value
+	 * @param forwarded true if chain is Forwarded header
+	 * @param trusted
+	 * @param addr
+	 * @return client address or null if there is no valid entry
+	 */
+	private static String detectIP(final String chain, final boolean forwarded, final IpTrie trusted, final long[] addr) {
+
+		int start = -1;
+		int end = -1;
+		int pos = chain.length();
+
+		while (pos >= 0) {
+
+			final int comma = chain.lastIndexOf(',', pos - 1);
+			final long range = forwarded ? forNode(chain, comma + 1, pos) : trim(chain, comma + 1, pos);
+			final long node = range < 0 ? -1 : address(chain, (int) (range >>> 32), (int) range);
+
+			if (node < 0 || !parse(chain, (int) (node >>> 32), (int) node, addr)) {
 				break;
 			}
-			
+
+			start = (int) (node >>> 32);
+			end = (int) node;
+
+			if (!trusted.contains(addr[0], addr[1])) {
+				break;
+			}
+
+			pos = comma;
+		}
+
+		return start < 0 ? null : chain.substring(start, end);
+	}
+
+	/**
+	 * Find value of "for" parameter in a Forwarded element,
+	 * e.g. for=192.0.2.60;proto=http;by=203.0.113.43
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @return value range as start << 32 | end, or -1 if not found
+	 */
+	private static long forNode(final CharSequence s, final int start, final int end) {
+
+		int pos = start;
+
+		while (pos < end) {
+
+			int next = pos;
+			while (next < end && s.charAt(next) != ';') {
+				next++;
+			}
+
+			final long pair = trim(s, pos, next);
+			final int from = (int) (pair >>> 32);
+			final int to = (int) pair;
+
+			if (to - from > 4 && s.charAt(from + 3) == '=' && regionMatches(s, from, "for")) {
+				final long value = trim(s, from + 4, to);
+				final int a = (int) (value >>> 32);
+				final int b = (int) value;
+				if (b - a >= 2 && s.charAt(a) == '"' && s.charAt(b - 1) == '"') {
+					return (long) (a + 1) << 32 | (b - 1);
+				}
+				return value;
+			}
+
+			pos = next + 1;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Remove IPv6 brackets and port from address,
+	 * e.g. [2001:db8::1]:4711 or 192.0.2.43:47011
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @return address range as start << 32 | end, or -1 if not valid
+	 */
+	private static long address(final CharSequence s, final int start, final int end) {
+
+		if (start >= end) {
+			return -1;
+		}
+
+		if (s.charAt(start) == '[') {
+			for (int i = start + 1; i < end; i++) {
+				if (s.charAt(i) == ']') {
+					return (long) (start + 1) << 32 | i;
+				}
+			}
+			return -1;
+		}
+
+		int colon = -1;
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) == ':') {
+				if (colon >= 0) {
+					return (long) start << 32 | end;
+				}
+				colon = i;
+			}
 		}
 
-		if (!found) {
-			tmp = null;
+		return colon < 0 ? (long) start << 32 | end : (long) start << 32 | colon;
+	}
+
+	private static long trim(final CharSequence s, final int start, final int end) {
+		int a = start;
+		int b = end;
+		while (a < b && s.charAt(a) <= ' ') {
+			a++;
+		}
+		while (b > a && s.charAt(b - 1) <= ' ') {
+			b--;
 		}
-		
-		return tmp;
+		return (long) a << 32 | b;
 	}
 
+	private static boolean regionMatches(final CharSequence s, final int start, final String name) {
+		for (int i = 0; i < name.length(); i++) {
+			if (Character.toLowerCase(s.charAt(start + i)) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
 
 	/**
-	 * Get IP address from HttpRequest
-	 * @param request
+	 * Parse IPv4 or IPv6 address into 128 bit value,
+	 * IPv4 is stored as IPv4-mapped IPv6 address (::ffff:a.b.c.d).
+	 * IPv6 zone index is ignored.
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @param out upper and lower 64 bits of address
+	 * @return false if address is not valid
+	 */
+	static boolean parse(final CharSequence s, final int start, final int end, final long[] out) {
+
+		final long range = trim(s, start, end);
+		final int from = (int) (range >>> 32);
+		final int to = (int) range;
+
+		for (int i = from; i < to; i++) {
+			if (s.charAt(i) == ':') {
+				return parse6(s, from, to, out);
+			}
+		}
+
+		final long ip = parse4(s, from, to);
+		if (ip < 0) {
+			return false;
+		}
+
+		out[0] = 0;
+		out[1] = 0xFFFF00000000L | ip;
+		return true;
+	}
+
+	/**
+	 * Parse dotted decimal IPv4 address
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @return 32 bit address or -1 if not valid
+	 */
+	private static long parse4(final CharSequence s, final int start, final int end) {
+
+		long result = 0;
+		int octets = 0;
+		int value = -1;
+		int digits = 0;
+
+		for (int i = start; i < end; i++) {
+
+			final char c = s.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+				value = (value < 0 ? 0 : value * 10) + (c - '0');
+				if (++digits > 3 || value > 255) {
+					return -1;
+				}
+			} else if (c == '.' && value >= 0 && octets < 3) {
+				result = result << 8 | value;
+				octets++;
+				value = -1;
+				digits = 0;
+			} else {
+				return -1;
+			}
+		}
+
+		return value < 0 || octets != 3 ? -1 : result << 8 | value;
+	}
+
+	/**
+	 * Parse IPv6 address in two passes, the first one validates
+	 * and counts groups, the second one stores groups
+	 * with zero groups of "::" inserted
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @param out
 	 * @return
 	 */
-	public static String getClientIpAddress(HttpServletRequest request) {
-		
-		String ip = null;
-		
-		for (String header : HEADERS_TO_TRY) {
-		
-			ip = request.getHeader(header);
-			
-			if (Objects.nonNull(ip)) {
-				ip = detectIP(ip);
+	private static boolean parse6(final CharSequence s, final int start, final int end, final long[] out) {
+
+		int to = end;
+		for (int i = start; i < end; i++) {
+			if (s.charAt(i) == '%') {
+				if (i == end - 1) {
+					return false;
+				}
+				to = i;
+				break;
 			}
-			
-			if (Objects.nonNull(ip) && ip.length() != 0 && !"unknown".equalsIgnoreCase(ip)) {
-				return ip;
-			
+		}
+
+		final int info = scan6(s, start, to, null, 0);
+		if (info < 0) {
+			return false;
+		}
+
+		final int groups = info >>> 4;
+		final int gap = (info & 0xF) - 1;
+
+		if (gap < 0 ? groups != 8 : groups > 7) {
+			return false;
+		}
+
+		out[0] = 0;
+		out[1] = 0;
+		scan6(s, start, to, out, 8 - groups);
+		return true;
+	}
+
+	/**
+	 * Scan IPv6 groups
+	 *
+	 * @param s
+	 * @param start
+	 * @param end
+	 * @param out if null, groups are only validated
+	 * @param skip number of zero groups represented by "::"
+	 * @return groups << 4 | (groups before "::" + 1), or -1 if not valid
+	 */
+	private static int scan6(final CharSequence s, final int start, final int end, final long[] out, final int skip) {
+
+		int groups = 0;
+		int gap = -1;
+		int index = 0;
+		int pos = start;
+
+		if (end - start >= 2 && s.charAt(start) == ':' && s.charAt(start + 1) == ':') {
+			gap = 0;
+			index += skip;
+			pos += 2;
+		}
+
+		while (pos < end) {
+
+			int next = pos;
+			boolean dotted = false;
+			while (next < end && s.charAt(next) != ':') {
+				dotted |= s.charAt(next) == '.';
+				next++;
+			}
+
+			if (dotted) {
+				final long ip = next == end ? parse4(s, pos, next) : -1;
+				if (ip < 0 || groups > 6) {
+					return -1;
+				}
+				set(out, index, (int) (ip >>> 16));
+				set(out, index + 1, (int) (ip & 0xFFFF));
+				groups += 2;
+				break;
+			}
+
+			final int value = hex(s, pos, next);
+			if (value < 0 || groups == 8) {
+				return -1;
 			}
+
+			set(out, index++, value);
+			groups++;
+
+			if (next == end) {
+				break;
+			}
+
+			pos = next + 1;
+
+			if (pos < end && s.charAt(pos) == ':') {
+				if (gap >= 0) {
+					return -1;
+				}
+				gap = groups;
+				index += skip;
+				pos++;
+			} else if (pos == end) {
+				return -1;
+			}
+		}
+
+		return groups << 4 | (gap + 1);
+	}
+
+	private static int hex(final CharSequence s, final int start, final int end) {
+
+		if (start == end || end - start > 4) {
+			return -1;
+		}
+
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			final char c = s.charAt(i);
+			final int digit;
+			if (c >= '0' && c <= '9') {
+				digit = c - '0';
+			} else if (c >= 'a' && c <= 'f') {
+				digit = c - 'a' + 10;
+			} else if (c >= 'A' && c <= 'F') {
+				digit = c - 'A' + 10;
+			} else {
+				return -1;
+			}
+			value = value << 4 | digit;
+		}
+		return value;
+	}
+
+	private static void set(final long[] out, final int index, final int value) {
+		if (Objects.isNull(out)) {
+			return;
+		}
+		if (index < 4) {
+			out[0] |= (long) value << (48 - 16 * index);
+		} else {
+			out[1] |= (long) value << (48 - 16 * (index - 4));
 		}
-		
-		return request.getRemoteAddr();
 	}
 
 }
@@ -4,6 +4,7 @@
 package io.greenscreens.client;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.core.JsonFactory;
@@ -51,6 +52,17 @@ class JsonUtil {
     }
 
 
+    /**
+     * Conversion from raw UTF-8 JSON to Java class instance
+     * @param <T>
+     * @param type
+     * @param json
+     * @throws IOException
+     */
+    public static <T> T parse(final Class<T> type, final byte[] json) throws IOException {
+        return OBJECT_MAPPER.readValue(json, type);
+    }
+
     /**
      * Retrieves internal JSON parser engine
      * @return
@@ -69,6 +81,16 @@ class JsonUtil {
 	    return OBJECT_MAPPER.readTree(data);		
 	}
 
+	/**
+	 * Write Java object as UTF-8 JSON into the stream
+	 * @param out
+	 * @param object
+	 * @throws IOException
+	 */
+	public static void write(final OutputStream out, final Object object) throws IOException {
+		OBJECT_MAPPER.writeValue(out, object);
+	}
+
 	/**
 	 * Convert Java object to JSON string
 	 * @param object
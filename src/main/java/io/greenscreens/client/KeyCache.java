@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.PublicKey;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of decoded server public keys.
+ * Server key is the same for every generated URL until key rotation,
+ * so PEM / X.509 decoding is done only once per key.
+ * When server advertises a new key, cached entry is swapped
+ * and the old one is evicted.
+ */
+public enum KeyCache {
+	;
+
+	private static final ConcurrentHashMap<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+	// last key advertised by every server
+	private static final ConcurrentHashMap<String, String> SERVERS = new ConcurrentHashMap<>();
+
+	private static final LongAdder HITS = new LongAdder();
+	private static final LongAdder MISSES = new LongAdder();
+	private static final LongAdder EVICTIONS = new LongAdder();
+	private static final LongAdder ROTATIONS = new LongAdder();
+
+	private static volatile int capacity = 64;
+
+	/**
+	 * Server key decoder
+	 */
+	@FunctionalInterface
+	interface Decoder {
+		PublicKey decode(String key) throws Exception;
+	}
+
+	/**
+	 * Set max. number of cached keys
+	 *
+	 * @param size
+	 */
+	public static void setCapacity(final int size) {
+		capacity = Math.max(1, size);
+	}
+
+	/**
+	 * Get decoded public key from cache or decode and store it
+	 *
+	 * @param key raw key as received from server
+	 * @param decoder
+	 * @return
+	 * @throws Exception
+	 */
+	static PublicKey get(final String key, final Decoder decoder) throws Exception {
+
+		final Entry entry = CACHE.get(key);
+
+		if (Objects.nonNull(entry)) {
+			HITS.increment();
+			entry.used = System.nanoTime();
+			return entry.key;
+		}
+
+		MISSES.increment();
+		return put(key, decoder.decode(key));
+	}
+
+	/**
+	 * Register key received from the server.
+	 * Key is decoded in advance and the previous server key is evicted,
+	 * so requests using new server data never decode the key.
+	 *
+	 * @param url server URL
+	 * @param key raw key as received from server
+	 * @param decoder
+	 * @throws Exception
+	 */
+	static void advertise(final String url, final String key, final Decoder decoder) throws Exception {
+
+		if (Objects.isNull(key)) {
+			return;
+		}
+
+		if (!CACHE.containsKey(key)) {
+			put(key, decoder.decode(key));
+		}
+
+		final String old = SERVERS.put(url, key);
+
+		if (Objects.nonNull(old) && !old.equals(key)) {
+			ROTATIONS.increment();
+			if (!SERVERS.containsValue(old) && Objects.nonNull(CACHE.remove(old))) {
+				EVICTIONS.increment();
+			}
+			SessionPool.evict(old);
+		}
+	}
+
+	/**
+	 * Store decoded key, evict least recently used if cache is full
+	 *
+	 * @param key
+	 * @param publicKey
+	 * @return
+	 */
+	private static PublicKey put(final String key, final PublicKey publicKey) {
+
+		CACHE.put(key, new Entry(publicKey));
+
+		while (CACHE.size() > capacity) {
+			evict();
+		}
+
+		return publicKey;
+	}
+
+	private static void evict() {
+
+		Map.Entry<String, Entry> oldest = null;
+
+		for (Map.Entry<String, Entry> item : CACHE.entrySet()) {
+			if (Objects.isNull(oldest) || item.getValue().used < oldest.getValue().used) {
+				oldest = item;
+			}
+		}
+
+		if (Objects.nonNull(oldest) && CACHE.remove(oldest.getKey(), oldest.getValue())) {
+			EVICTIONS.increment();
+		}
+	}
+
+	/**
+	 * Remove all cached keys
+	 */
+	public static void clear() {
+		CACHE.clear();
+		SERVERS.clear();
+	}
+
+	public static int size() {
+		return CACHE.size();
+	}
+
+	public static long getHits() {
+		return HITS.sum();
+	}
+
+	public static long getMisses() {
+		return MISSES.sum();
+	}
+
+	public static long getEvictions() {
+		return EVICTIONS.sum();
+	}
+
+	public static long getRotations() {
+		return ROTATIONS.sum();
+	}
+
+	/**
+	 * Decoded key with last access time
+	 */
+	private static final class Entry {
+
+		private final PublicKey key;
+		private volatile long used = System.nanoTime();
+
+		Entry(final PublicKey key) {
+			this.key = key;
+		}
+	}
+}
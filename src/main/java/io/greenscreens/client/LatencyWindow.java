@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent server data fetch latencies per server URL,
+ * used to calculate hedged request delay.
+ */
+final class LatencyWindow {
+
+	private static final ConcurrentHashMap<String, LatencyWindow> WINDOWS = new ConcurrentHashMap<>();
+
+	private static final int SIZE = 64;
+
+	// min. number of samples for percentile
+	private static final int MIN_SAMPLES = 8;
+
+	private final long[] samples = new long[SIZE];
+
+	// samples stored, up to SIZE, and next slot to overwrite
+	private int count;
+	private int next;
+
+	/**
+	 * Get latency window for a given URL
+	 *
+	 * @param url
+	 * @return
+	 */
+	static LatencyWindow of(final String url) {
+		return WINDOWS.computeIfAbsent(url, k -> new LatencyWindow());
+	}
+
+	/**
+	 * Register fetch latency
+	 *
+	 * @param nanos
+	 */
+	synchronized void add(final long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % SIZE;
+		count = Math.min(count + 1, SIZE);
+	}
+
+	/**
+	 * Latency percentile of recent fetches
+	 *
+	 * @param percentile between 0 and 1
+	 * @return latency in nanoseconds, or -1 if there are not enough samples
+	 */
+	long percentile(final double percentile) {
+
+		final long[] sorted;
+		synchronized (this) {
+			if (count < MIN_SAMPLES) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(samples, count);
+		}
+
+		Arrays.sort(sorted);
+		final int idx = (int) Math.ceil(percentile * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+	}
+
+}
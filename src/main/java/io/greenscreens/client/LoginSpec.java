@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per user login data for URL generation.
+ * Values not set here are taken from the Builder or BuilderProfile.
+ */
+public final class LoginSpec {
+
+	private String uuid;
+	private String host;
+	private String user;
+	private String password;
+	private String displayName;
+	private String ipAddress;
+	private String token;
+	private Long appID;
+	private Long exp;
+
+	/**
+	 * Get login spec instance
+	 * 
+	 * @param user
+	 * @param password
+	 * @return
+	 */
+	public static LoginSpec get(final String user, final String password) {
+		return new LoginSpec().setUser(user).setPassword(password);
+	}
+
+	/**
+	 * Get empty login spec instance
+	 * 
+	 * @return
+	 */
+	public static LoginSpec get() {
+		return new LoginSpec();
+	}
+
+	private LoginSpec() {
+		super();
+	}
+
+	public LoginSpec setUUID(final String uuid) {
+		this.uuid = uuid;
+		return this;
+	}
+
+	public LoginSpec setHost(final String host) {
+		this.host = host;
+		return this;
+	}
+
+	public LoginSpec setUser(final String user) {
+		this.user = user;
+		return this;
+	}
+
+	public LoginSpec setPassword(final String password) {
+		this.password = password;
+		return this;
+	}
+
+	public LoginSpec setDisplayName(final String displayName) {
+		this.displayName = displayName;
+		return this;
+	}
+
+	public LoginSpec setIpAddress(final String ipAddress) {
+		this.ipAddress = ipAddress;
+		return this;
+	}
+
+	public LoginSpec setToken(final String token) {
+		this.token = token;
+		return this;
+	}
+
+	/**
+	 * Set browser fingerprint or mobile application id
+	 * 
+	 * @param appID
+	 * @return
+	 */
+	public LoginSpec setAppID(final long appID) {
+		this.appID = appID;
+		return this;
+	}
+
+	/**
+	 * Set encrypted URL expiration
+	 * 
+	 * @param value
+	 * @param unit
+	 * @return
+	 */
+	public LoginSpec setExpiration(final long value, final TimeUnit unit) {
+		this.exp = unit.toMillis(value);
+		return this;
+	}
+
+	String getUuid() {
+		return uuid;
+	}
+
+	String getHost() {
+		return host;
+	}
+
+	String getUser() {
+		return user;
+	}
+
+	String getPassword() {
+		return password;
+	}
+
+	String getDisplayName() {
+		return displayName;
+	}
+
+	String getIpAddress() {
+		return ipAddress;
+	}
+
+	String getToken() {
+		return token;
+	}
+
+	Long getAppID() {
+		return appID;
+	}
+
+	Long getExp() {
+		return exp;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("LoginSpec [uuid=%s, host=%s, user=%s]", uuid, host, user);
+	}
+
+	/**
+	 * Get value or default if value is not set
+	 * 
+	 * @param <T>
+	 * @param value
+	 * @param def
+	 * @return
+	 */
+	static <T> T or(final T value, final T def) {
+		return Objects.isNull(value) ? def : value;
+	}
+
+}
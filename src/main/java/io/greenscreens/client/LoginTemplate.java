@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Login data common to all requests of a profile.
+ * Values never changed per request are serialized once,
+ * for every request only values from {@link LoginSpec}, OTP and timestamps
+ * are written with a streaming generator, followed by the pre-serialized part.
+ * Immutable, safe to share between threads.
+ */
+final class LoginTemplate {
+
+	// TnLogin properties written per request, order as in TnLogin
+	private static final String[] REQUEST_FIELDS = {
+			"otp", "uuid", "host", "user", "password", "displayName",
+			"ipAddress", "appID", "token", "ts", "exp" };
+
+	private static final SerializedString OTP = new SerializedString("otp");
+	private static final SerializedString UUID = new SerializedString("uuid");
+	private static final SerializedString HOST = new SerializedString("host");
+	private static final SerializedString USER = new SerializedString("user");
+	private static final SerializedString PASSWORD = new SerializedString("password");
+	private static final SerializedString DISPLAY_NAME = new SerializedString("displayName");
+	private static final SerializedString IP_ADDRESS = new SerializedString("ipAddress");
+	private static final SerializedString APP_ID = new SerializedString("appID");
+	private static final SerializedString TOKEN = new SerializedString("token");
+	private static final SerializedString TS = new SerializedString("ts");
+	private static final SerializedString EXP = new SerializedString("exp");
+
+	// profile defaults for values which can be set per request
+	private final String uuid;
+	private final String host;
+	private final String user;
+	private final String password;
+	private final String displayName;
+	private final String ipAddress;
+	private final String token;
+	private final long appID;
+
+	// constant properties as raw JSON, with leading comma, or empty
+	private final SerializedString fixed;
+
+	LoginTemplate(final TnLogin template) {
+		super();
+		this.uuid = template.getUuid();
+		this.host = template.getHost();
+		this.user = template.getUser();
+		this.password = template.getPassword();
+		this.displayName = template.getDisplayName();
+		this.ipAddress = template.getIpAddress();
+		this.token = template.getToken();
+		this.appID = template.getAppID();
+		this.fixed = toFixed(template);
+	}
+
+	long getAppID() {
+		return appID;
+	}
+
+	String getIpAddress(final LoginSpec spec) {
+		return LoginSpec.or(spec.getIpAddress(), ipAddress);
+	}
+
+	/**
+	 * Write login JSON for a single request as UTF-8,
+	 * values not set in spec are taken from the template
+	 *
+	 * @param out
+	 * @param spec
+	 * @param otp
+	 * @param ts
+	 * @param exp
+	 * @throws IOException
+	 */
+	void write(final OutputStream out, final LoginSpec spec, final int otp, final long ts, final long exp) throws IOException {
+
+		try (JsonGenerator gen = JsonUtil.getJSONEngine().getFactory().createGenerator(out)) {
+			gen.writeStartObject();
+			gen.writeFieldName(OTP);
+			gen.writeNumber(otp);
+			write(gen, UUID, LoginSpec.or(spec.getUuid(), uuid));
+			write(gen, HOST, LoginSpec.or(spec.getHost(), host));
+			write(gen, USER, LoginSpec.or(spec.getUser(), user));
+			write(gen, PASSWORD, LoginSpec.or(spec.getPassword(), password));
+			write(gen, DISPLAY_NAME, LoginSpec.or(spec.getDisplayName(), displayName));
+			write(gen, IP_ADDRESS, LoginSpec.or(spec.getIpAddress(), ipAddress));
+			gen.writeFieldName(APP_ID);
+			gen.writeNumber(LoginSpec.or(spec.getAppID(), appID));
+			write(gen, TOKEN, LoginSpec.or(spec.getToken(), token));
+			gen.writeFieldName(TS);
+			gen.writeNumber(ts);
+			gen.writeFieldName(EXP);
+			gen.writeNumber(exp);
+			gen.writeRaw(fixed);
+			gen.writeEndObject();
+		}
+	}
+
+	// null values are skipped, as with Include.NON_NULL
+	private static void write(final JsonGenerator gen, final SerializedString name, final String value) throws IOException {
+		if (Objects.nonNull(value)) {
+			gen.writeFieldName(name);
+			gen.writeString(value);
+		}
+	}
+
+	/**
+	 * Serialize template once, without properties written per request
+	 *
+	 * @param template
+	 * @return
+	 */
+	private static SerializedString toFixed(final TnLogin template) {
+
+		final ObjectNode node = JsonUtil.getJSONEngine().valueToTree(template);
+		for (String name : REQUEST_FIELDS) {
+			node.remove(name);
+		}
+
+		if (node.size() == 0) {
+			return new SerializedString("");
+		}
+
+		final String json = node.toString();
+		return new SerializedString("," + json.substring(1, json.length() - 1));
+	}
+
+}
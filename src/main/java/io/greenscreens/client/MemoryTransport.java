@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * In-memory transport returning canned server authorization data.
+ * Used to test or benchmark URL generation without Green Screens server.
+ */
+public final class MemoryTransport implements Transport {
+
+	private final ConcurrentHashMap<String, byte[]> responses = new ConcurrentHashMap<>();
+
+	private final String key;
+	private final int ver;
+	private final int build;
+
+	/**
+	 * Transport returning given server key for every URL,
+	 * server timestamp is set to the current time on every call
+	 * 
+	 * @param key Base64 X.509 (ECDH) or PEM (RSA) server public key
+	 * @param ver server version, 6+ for ECDH
+	 * @param build server build number, e.g. 20220725
+	 */
+	public MemoryTransport(final String key, final int ver, final int build) {
+		super();
+		this.key = key;
+		this.ver = ver;
+		this.build = build;
+	}
+
+	/**
+	 * Transport returning only registered responses
+	 */
+	public MemoryTransport() {
+		this(null, 0, 0);
+	}
+
+	/**
+	 * Register fixed JSON response for URL
+	 * 
+	 * @param url
+	 * @param json
+	 * @return
+	 */
+	public MemoryTransport put(final String url, final String json) {
+		responses.put(url, json.getBytes(StandardCharsets.UTF_8));
+		return this;
+	}
+
+	@Override
+	public byte[] get(final String url) throws IOException {
+
+		final byte[] data = responses.get(url);
+		if (Objects.nonNull(data)) {
+			return data;
+		}
+
+		if (Objects.isNull(key)) {
+			throw new IOException("No response registered for " + url);
+		}
+
+		return toJson().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public CompletableFuture<byte[]> getAsync(final String url, final Executor executor) {
+		try {
+			return CompletableFuture.completedFuture(get(url));
+		} catch (IOException e) {
+			final CompletableFuture<byte[]> future = new CompletableFuture<>();
+			future.completeExceptionally(e);
+			return future;
+		}
+	}
+
+	private String toJson() {
+		final String json = key.replace("\r", "").replace("\n", "\\n");
+		return String.format("{\"ts\":%d,\"ver\":%d,\"build\":%d,\"key\":\"%s\"}", System.currentTimeMillis(), ver, build, json);
+	}
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import com.eatthepath.otp.ConcurrentTimeBasedOneTimePasswordGenerator;
+import com.eatthepath.otp.TimeBasedOneTimePasswordGenerator;
+
+/**
+ * Per OTP key token cache.
+ * TOTP token is constant for a whole time step, so the key is decoded once,
+ * token is calculated once per step and served to all requests
+ * with a single volatile read. Token for the next step is calculated
+ * shortly before the step boundary.
+ */
+public final class OtpCache {
+
+	private static final ConcurrentHashMap<String, OtpCache> CACHE = new ConcurrentHashMap<>();
+
+	private static final long STEP = TimeBasedOneTimePasswordGenerator.DEFAULT_TIME_STEP.toMillis();
+
+	private static volatile long ahead = TimeUnit.SECONDS.toMillis(2);
+
+	private final String otpKey;
+	private final AtomicBoolean preparing = new AtomicBoolean();
+
+	// guarded by this
+	private Key key;
+	private ConcurrentTimeBasedOneTimePasswordGenerator generator;
+
+	private volatile Tokens tokens;
+
+	private OtpCache(final String otpKey) {
+		super();
+		this.otpKey = otpKey;
+	}
+
+	/**
+	 * Get token cache for a given OTP key
+	 *
+	 * @param otpKey Base32 encoded key
+	 * @return
+	 */
+	static OtpCache of(final String otpKey) {
+		return CACHE.computeIfAbsent(otpKey, OtpCache::new);
+	}
+
+	/**
+	 * Set time before step boundary when next token is calculated
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setAhead(final long value, final TimeUnit unit) {
+		ahead = Math.max(0, Math.min(STEP, unit.toMillis(value)));
+	}
+
+	/**
+	 * Remove all cached keys and tokens
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	/**
+	 * Token for the current time step
+	 *
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	int get() throws GeneralSecurityException {
+		return get(System.currentTimeMillis());
+	}
+
+	/**
+	 * Token for the time step of a given time
+	 *
+	 * @param now time in milliseconds
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	int get(final long now) throws GeneralSecurityException {
+
+		final long step = now / STEP;
+		final Tokens current = tokens;
+
+		if (Objects.nonNull(current)) {
+
+			if (current.step == step) {
+				if (!current.prepared && STEP - now % STEP <= ahead) {
+					prepare(current);
+				}
+				return current.token;
+			}
+
+			if (current.prepared && current.step + 1 == step) {
+				tokens = new Tokens(step, current.next);
+				return current.next;
+			}
+		}
+
+		return calculate(step);
+	}
+
+	/**
+	 * Calculate token for the next step, without blocking other callers
+	 *
+	 * @param current
+	 * @throws GeneralSecurityException
+	 */
+	private void prepare(final Tokens current) throws GeneralSecurityException {
+
+		if (!preparing.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			final int next = generate(current.step + 1);
+			if (tokens == current) {
+				tokens = new Tokens(current.step, current.token, next);
+			}
+		} finally {
+			preparing.set(false);
+		}
+	}
+
+	/**
+	 * Calculate token on cache miss
+	 *
+	 * @param step
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	private synchronized int calculate(final long step) throws GeneralSecurityException {
+
+		final Tokens current = tokens;
+		if (Objects.nonNull(current) && current.step == step) {
+			return current.token;
+		}
+
+		final int token = generate(step);
+		tokens = new Tokens(step, token);
+		return token;
+	}
+
+	private synchronized int generate(final long step) throws GeneralSecurityException {
+
+		if (Objects.isNull(generator)) {
+			generator = new ConcurrentTimeBasedOneTimePasswordGenerator();
+			key = new SecretKeySpec(Utils.decodeOTPKey(otpKey), generator.getAlgorithm());
+		}
+
+		return generator.generateOneTimePassword(key, step);
+	}
+
+	/**
+	 * Immutable tokens for a time step
+	 */
+	private static final class Tokens {
+
+		private final long step;
+		private final int token;
+
+		// token for the following step
+		private final int next;
+		private final boolean prepared;
+
+		Tokens(final long step, final int token) {
+			this.step = step;
+			this.token = token;
+			this.next = 0;
+			this.prepared = false;
+		}
+
+		Tokens(final long step, final int token, final int next) {
+			this.step = step;
+			this.token = token;
+			this.next = next;
+			this.prepared = true;
+		}
+	}
+}
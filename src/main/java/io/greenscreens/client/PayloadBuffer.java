@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Reusable buffers for URL payload encryption.
+ * JSON is serialized as UTF-8 directly into the input buffer,
+ * padded in place and encrypted into the output buffer,
+ * so no intermediate String or array copies are created.
+ * Plain payload holds credentials, it is wiped right after encryption.
+ * Not thread safe, used through thread bound {@link CryptoContext}.
+ */
+final class PayloadBuffer extends OutputStream {
+
+	private static final int INITIAL = 512;
+
+	// buffers grown above this size are not kept for reuse
+	private static final int RETAIN = 16 * 1024;
+
+	private byte[] input = new byte[INITIAL];
+	private byte[] output = new byte[INITIAL];
+	private int count;
+
+	/**
+	 * Prepare buffer for new payload
+	 * @return
+	 */
+	PayloadBuffer reset() {
+		wipe();
+		if (input.length > RETAIN) {
+			input = new byte[INITIAL];
+		}
+		if (output.length > RETAIN) {
+			output = new byte[INITIAL];
+		}
+		return this;
+	}
+
+	/**
+	 * Clear plain payload written so far
+	 */
+	void wipe() {
+		Arrays.fill(input, 0, count, (byte) 0);
+		count = 0;
+	}
+
+	@Override
+	public void write(final int b) {
+		ensure(count + 1);
+		input[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) {
+		ensure(count + len);
+		System.arraycopy(b, off, input, count, len);
+		count += len;
+	}
+
+	/**
+	 * Blank padding for AES algorithm, applied to UTF-8 bytes.
+	 * Always adds from 1 to block size bytes.
+	 *
+	 * @param block
+	 * @param chr
+	 */
+	void pad(final int block, final byte chr) {
+		final int len = block - count % block;
+		ensure(count + len);
+		Arrays.fill(input, count, count + len, chr);
+		count += len;
+	}
+
+	/**
+	 * Output buffer large enough for given number of bytes
+	 *
+	 * @param size
+	 * @return
+	 */
+	byte[] output(final int size) {
+		if (output.length < size) {
+			output = new byte[Math.max(size, output.length << 1)];
+		}
+		return output;
+	}
+
+	/**
+	 * Output buffer holding last encrypted payload
+	 * @return
+	 */
+	byte[] output() {
+		return output;
+	}
+
+	byte[] input() {
+		return input;
+	}
+
+	int size() {
+		return count;
+	}
+
+	private void ensure(final int size) {
+		if (input.length < size) {
+			final byte[] old = input;
+			input = Arrays.copyOf(old, Math.max(size, old.length << 1));
+			Arrays.fill(old, 0, count, (byte) 0);
+		}
+	}
+
+}
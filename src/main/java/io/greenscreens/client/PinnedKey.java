@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Green Screens server data known at deploy time.
+ * When set with {@link Builder#setPinnedKey(PinnedKey)}, server key,
+ * version and build are not fetched from the server,
+ * so URLs are generated locally without any network call.
+ * Key is decoded and validated when pinned key is created.
+ */
+public final class PinnedKey {
+
+	private final String key;
+	private final int ver;
+	private final String version;
+	private final int build;
+
+	private PinnedKey(final String key, final int ver, final String version, final int build) throws Exception {
+		super();
+		this.key = flatten(key);
+		this.ver = ver;
+		this.version = version;
+		this.build = build;
+		KeyCache.get(this.key, ver > 5 ? SharedSecret::toPublicKey : RsaUtil::toPublicKey);
+	}
+
+	/**
+	 * Create from server public key
+	 *
+	 * @param key PEM or Base64 encoded X.509 public key
+	 * @param ver key version, ECDH for 6 and above, RSA otherwise
+	 * @param version server version
+	 * @param build server build number
+	 * @return
+	 * @throws Exception if key is invalid
+	 */
+	public static PinnedKey of(final String key, final int ver, final String version, final int build) throws Exception {
+		if (Objects.isNull(key) || key.trim().isEmpty()) {
+			throw new IllegalArgumentException("Server key not set");
+		}
+		return new PinnedKey(key, ver, version, build);
+	}
+
+	/**
+	 * Create from certificate stored in a keystore
+	 *
+	 * @param keyStore loaded keystore
+	 * @param alias certificate alias
+	 * @param ver key version, ECDH for 6 and above, RSA otherwise
+	 * @param version server version
+	 * @param build server build number
+	 * @return
+	 * @throws Exception if certificate is missing or key is invalid
+	 */
+	public static PinnedKey load(final KeyStore keyStore, final String alias, final int ver, final String version, final int build) throws Exception {
+		final Certificate cert = keyStore.getCertificate(alias);
+		if (Objects.isNull(cert)) {
+			throw new IllegalArgumentException("Certificate not found: " + alias);
+		}
+		final String key = Base64.getEncoder().encodeToString(cert.getPublicKey().getEncoded());
+		return new PinnedKey(key, ver, version, build);
+	}
+
+	/**
+	 * Create from properties file with entries
+	 * <pre>
+	 * key      - PEM or Base64 encoded X.509 public key
+	 * key.file - PEM file, relative to properties file; used if key not set
+	 * ver      - key version, required
+	 * version  - server version
+	 * build    - server build number
+	 * </pre>
+	 *
+	 * @param file
+	 * @return
+	 * @throws Exception if file can not be read or key is invalid
+	 */
+	public static PinnedKey load(final Path file) throws Exception {
+
+		final Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		}
+
+		String key = props.getProperty("key");
+		final String keyFile = props.getProperty("key.file");
+
+		if (Objects.isNull(key) && Objects.nonNull(keyFile)) {
+			final Path dir = file.toAbsolutePath().getParent();
+			key = new String(Files.readAllBytes(dir.resolve(keyFile.trim())), StandardCharsets.US_ASCII);
+		}
+
+		final String ver = props.getProperty("ver");
+		if (Objects.isNull(ver)) {
+			throw new IllegalArgumentException("Key version not set: " + file);
+		}
+
+		final String build = props.getProperty("build", "0");
+
+		return of(key, Integer.parseInt(ver.trim()), props.getProperty("version"), Integer.parseInt(build.trim()));
+	}
+
+	/**
+	 * Server data as it would be received from the server
+	 * @return
+	 */
+	TnAuth toAuth() {
+		final TnAuth auth = new TnAuth();
+		auth.setKey(key);
+		auth.setVer(ver);
+		auth.setVersion(version);
+		auth.setBuild(build);
+		return auth;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	public int getVer() {
+		return ver;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public int getBuild() {
+		return build;
+	}
+
+	/**
+	 * Remove PEM headers and white space, leaving Base64 data only
+	 * @param key
+	 * @return
+	 */
+	private static String flatten(final String key) {
+
+		final StringBuilder sb = new StringBuilder(key.length());
+
+		for (String line : key.split("\r?\n")) {
+			final String value = line.trim();
+			if (!value.startsWith("-----")) {
+				sb.append(value);
+			}
+		}
+
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.GeneralSecurityException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random source for AES key and IV generation.
+ * Every thread gets own generator through {@link CryptoContext},
+ * so there is no lock shared between threads.
+ * Random bytes are drawn in bulk into a small pool
+ * and mapped to alphabet characters without modulo bias.
+ * Generator is replaced with a freshly seeded one periodically,
+ * or when algorithm is changed.
+ */
+public final class RandomSource {
+
+	private static final String DEFAULT_ALGORITHM = "DRBG";
+	private static final String FALLBACK_ALGORITHM = "SHA1PRNG";
+
+	private static final int POOL = 256;
+
+	private static final AtomicInteger GENERATION = new AtomicInteger();
+
+	private static volatile String algorithm = DEFAULT_ALGORITHM;
+	private static volatile long interval = TimeUnit.MINUTES.toNanos(10);
+	private static volatile long limit = 1L << 20;
+
+	private final byte[] pool = new byte[POOL];
+	private int position = POOL;
+
+	private SecureRandom random;
+	private int generation;
+	private long seeded;
+	private long drawn;
+
+	RandomSource() throws GeneralSecurityException {
+		super();
+		reseed();
+	}
+
+	/**
+	 * Set SecureRandom algorithm, e.g. DRBG (Java 9+) or SHA1PRNG.
+	 * Default is DRBG, with SHA1PRNG fallback when not available.
+	 *
+	 * @param name
+	 * @throws NoSuchAlgorithmException
+	 */
+	public static void setAlgorithm(final String name) throws NoSuchAlgorithmException {
+		SecureRandom.getInstance(name);
+		algorithm = name;
+		GENERATION.incrementAndGet();
+	}
+
+	/**
+	 * Set how often generator is replaced with a freshly seeded one
+	 *
+	 * @param value
+	 * @param unit
+	 */
+	public static void setReseedInterval(final long value, final TimeUnit unit) {
+		interval = unit.toNanos(value);
+	}
+
+	/**
+	 * Set max. number of bytes drawn from a generator before it is replaced
+	 *
+	 * @param bytes
+	 */
+	public static void setReseedLimit(final long bytes) {
+		limit = bytes;
+	}
+
+	/**
+	 * Fill array with random bytes
+	 *
+	 * @param data
+	 * @throws GeneralSecurityException
+	 */
+	void nextBytes(final byte[] data) throws GeneralSecurityException {
+		check(data.length);
+		random.nextBytes(data);
+	}
+
+	/**
+	 * Fill array with random characters from alphabet.
+	 * Pool bytes above the largest multiple of alphabet size are rejected,
+	 * so every character has the same probability.
+	 *
+	 * @param alphabet up to 256 ASCII characters
+	 * @param data
+	 * @throws GeneralSecurityException
+	 */
+	void nextChars(final byte[] alphabet, final byte[] data) throws GeneralSecurityException {
+
+		final int size = alphabet.length;
+		if (size == 0 || size > POOL) {
+			throw new IllegalArgumentException("Invalid alphabet size: " + size);
+		}
+
+		final int bound = POOL - POOL % size;
+
+		for (int i = 0; i < data.length; i++) {
+			int value;
+			do {
+				value = next();
+			} while (value >= bound);
+			data[i] = alphabet[value % size];
+		}
+	}
+
+	/**
+	 * Next random byte from pool, consumed bytes are cleared
+	 *
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	private int next() throws GeneralSecurityException {
+
+		if (position == POOL) {
+			check(POOL);
+			random.nextBytes(pool);
+			position = 0;
+		}
+
+		final int value = pool[position] & 0xFF;
+		pool[position++] = 0;
+		return value;
+	}
+
+	/**
+	 * Replace generator if expired or algorithm changed
+	 *
+	 * @param size number of bytes to draw
+	 * @throws GeneralSecurityException
+	 */
+	private void check(final int size) throws GeneralSecurityException {
+
+		drawn += size;
+
+		if (generation != GENERATION.get() || drawn > limit || System.nanoTime() - seeded > interval) {
+			reseed();
+			drawn = size;
+		}
+	}
+
+	private void reseed() throws GeneralSecurityException {
+		generation = GENERATION.get();
+		random = create(algorithm);
+		seeded = System.nanoTime();
+		drawn = 0;
+	}
+
+	/**
+	 * New instance is seeded from system entropy on first use
+	 *
+	 * @param name
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	private static SecureRandom create(final String name) throws GeneralSecurityException {
+		try {
+			return SecureRandom.getInstance(name);
+		} catch (NoSuchAlgorithmException e) {
+			if (Objects.equals(name, DEFAULT_ALGORITHM)) {
+				return SecureRandom.getInstance(FALLBACK_ALGORITHM);
+			}
+			throw e;
+		}
+	}
+
+}
@@ -3,27 +3,18 @@
  */
 package io.greenscreens.client;
 
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyFactory;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PublicKey;
 import java.security.spec.MGF1ParameterSpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 
-import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.OAEPParameterSpec;
 import javax.crypto.spec.PSource.PSpecified;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 
 /**
  * RSA utility to work with public RSA key
@@ -31,21 +22,15 @@ import org.slf4j.LoggerFactory;
 enum RsaUtil {
 	;
 
-	private static Logger LOG = LoggerFactory.getLogger(RsaUtil.class);
-	
-	private static final String RSA_MODE = "RSA/ECB/PKCS1Padding";
-	private static final String WEB_MODE = "RSA/NONE/OAEPWithSHA256AndMGF1Padding";
-	private static final String WEB_MODE_JCA = "RSA/NONE/OAEPWithSHA-256AndMGF1Padding";
 	private static final OAEPParameterSpec oaepParams = new OAEPParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, PSpecified.DEFAULT);
 
 	/**
 	 * Get RSA factory instance
 	 * @return
-	 * @throws NoSuchAlgorithmException
-	 * @throws NoSuchProviderException
+	 * @throws GeneralSecurityException
 	 */
-	private static KeyFactory getKeyFactory() throws NoSuchAlgorithmException, NoSuchProviderException {
-		return KeyFactory.getInstance("RSA");
+	private static KeyFactory getKeyFactory() throws GeneralSecurityException {
+		return CryptoContext.get().getRsaFactory();
 	}	
 	
 	/**
@@ -72,12 +57,22 @@ enum RsaUtil {
 	}
 	
 	/**
-	 * Convert PEm string format to PublicKey
+	 * Get cached PublicKey for PEM string
 	 * @param key
 	 * @return
 	 * @throws Exception
 	 */
 	public static PublicKey getPublicKey(final String key) throws Exception {
+		return KeyCache.get(key, RsaUtil::toPublicKey);
+	}
+
+	/**
+	 * Convert PEm string format to PublicKey
+	 * @param key
+	 * @return
+	 * @throws Exception
+	 */
+	static PublicKey toPublicKey(final String key) throws Exception {
 		final byte [] raw = convertFromPEM(key.getBytes());
 		final X509EncodedKeySpec spec = new X509EncodedKeySpec(raw);
 		final KeyFactory kf = getKeyFactory();
@@ -89,15 +84,9 @@ enum RsaUtil {
 	 * @param data
 	 * @param key
 	 * @return
-	 * @throws NoSuchProviderException 
-	 * @throws InvalidAlgorithmParameterException 
-	 * @throws NoSuchPaddingException 
-	 * @throws NoSuchAlgorithmException 
-	 * @throws InvalidKeyException 
-	 * @throws BadPaddingException 
-	 * @throws IllegalBlockSizeException 
+	 * @throws GeneralSecurityException 
 	 */
-	public static String encrypt(final byte[] data, final PublicKey key, final boolean modern) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidAlgorithmParameterException, NoSuchProviderException, IllegalBlockSizeException, BadPaddingException {
+	public static String encrypt(final byte[] data, final PublicKey key, final boolean modern) throws GeneralSecurityException {
     	final byte [] enc = encryptData(data, key, modern);
     	return Base64.getUrlEncoder().encodeToString(enc);		
 	}
@@ -107,15 +96,9 @@ enum RsaUtil {
      * @param Buffer
      * @param key
      * @return
-     * @throws NoSuchProviderException 
-     * @throws InvalidAlgorithmParameterException 
-     * @throws NoSuchPaddingException 
-     * @throws NoSuchAlgorithmException 
-     * @throws InvalidKeyException 
-     * @throws BadPaddingException 
-     * @throws IllegalBlockSizeException 
+     * @throws GeneralSecurityException 
      */
-	private static byte[] encryptData(final byte[] data, final PublicKey key, final boolean modern) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException, InvalidAlgorithmParameterException, NoSuchProviderException, IllegalBlockSizeException, BadPaddingException {
+	private static byte[] encryptData(final byte[] data, final PublicKey key, final boolean modern) throws GeneralSecurityException {
 		final Cipher cipher = getCipher(modern, key, Cipher.ENCRYPT_MODE);
 		return cipher.doFinal(data);
 	}
@@ -126,28 +109,14 @@ enum RsaUtil {
 	 * @param key
 	 * @param mode
 	 * @return
-	 * @throws NoSuchAlgorithmException
-	 * @throws NoSuchPaddingException
-	 * @throws InvalidKeyException
-	 * @throws InvalidAlgorithmParameterException
-	 * @throws NoSuchProviderException
+	 * @throws GeneralSecurityException
 	 */
-	private static Cipher getCipher(final boolean modern, final Key key, final int mode) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchProviderException  {
+	private static Cipher getCipher(final boolean modern, final Key key, final int mode) throws GeneralSecurityException  {
 
-		Cipher cipher = null;
-		SecurityProvider.get();
+		final Cipher cipher = CryptoContext.get().getRsa(modern);
 		if (modern) {
-			try {
-				cipher = Cipher.getInstance(WEB_MODE, SecurityProvider.provider());
-			} catch (Exception e) {
-				final String msg = Utils.toMessage(e);
-				LOG.error(msg);
-				LOG.debug(msg, e);
-				cipher = Cipher.getInstance(WEB_MODE_JCA, SecurityProvider.provider());
-			}
 			cipher.init(mode, key, oaepParams);
 		} else {
-			cipher = Cipher.getInstance(RSA_MODE);
 			cipher.init(mode, key);
 		}
 
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.security.KeyPair;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of precomputed ECDH sessions for GSv6+.
+ * Ephemeral key pair generation and key agreement do not depend on login data,
+ * so they are done in background for every known server key.
+ * URL generation takes a ready session when available, or creates one inline.
+ * Every session is used only once.
+ * Disabled by default, enable with {@link #configure(int, int)}.
+ */
+public enum SessionPool {
+	;
+
+	private static final Logger LOG = LoggerFactory.getLogger(SessionPool.class);
+
+	private static final ConcurrentHashMap<String, Stock> STOCKS = new ConcurrentHashMap<>();
+
+	// unused server key stock is removed after
+	private static final long IDLE = TimeUnit.MINUTES.toNanos(10);
+
+	private static volatile int capacity = 0;
+	private static volatile ThreadPoolExecutor executor;
+
+	/**
+	 * Precomputed ECDH data, ready to encrypt URL
+	 */
+	static final class Session {
+
+		// client public key in hex format
+		private final String key;
+		private final Aes aes;
+
+		Session(final String key, final Aes aes) {
+			this.key = key;
+			this.aes = aes;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		Aes getAes() {
+			return aes;
+		}
+	}
+
+	/**
+	 * Configure pool size per server key and number of background threads.
+	 * Zero capacity disables precomputation.
+	 *
+	 * @param size
+	 * @param threads
+	 */
+	public static synchronized void configure(final int size, final int threads) {
+
+		capacity = Math.max(0, size);
+		STOCKS.clear();
+
+		if (Objects.nonNull(executor)) {
+			executor.shutdownNow();
+			executor = null;
+		}
+
+		if (capacity > 0) {
+			final int count = Math.max(1, threads);
+			executor = new ThreadPoolExecutor(count, count, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+				final Thread thread = new Thread(r, "gs-ecdh-pool");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	/**
+	 * Get precomputed session without blocking
+	 *
+	 * @param serverKey
+	 * @return session or null if there is none in stock
+	 */
+	static Session poll(final String serverKey) {
+
+		// read once, pool may be reconfigured concurrently
+		final int size = capacity;
+		if (size == 0) {
+			return null;
+		}
+
+		final Stock stock = getStock(serverKey, size);
+		final Session session = stock.queue.poll();
+		stock.refill();
+		return session;
+	}
+
+	/**
+	 * Get precomputed session or create new one if there is none in stock
+	 *
+	 * @param serverKey
+	 * @return
+	 * @throws Exception
+	 */
+	static Session take(final String serverKey) throws Exception {
+		return take(serverKey, StageTimer.NONE);
+	}
+
+	/**
+	 * Get precomputed session or create new one, measuring creation stages
+	 *
+	 * @param serverKey
+	 * @param timer
+	 * @return
+	 * @throws Exception
+	 */
+	static Session take(final String serverKey, final StageTimer timer) throws Exception {
+		final Session session = poll(serverKey);
+		return Objects.isNull(session) ? create(serverKey, timer) : session;
+	}
+
+	/**
+	 * Create new ECDH session for given server key
+	 *
+	 * @param serverKey
+	 * @return
+	 * @throws Exception
+	 */
+	static Session create(final String serverKey) throws Exception {
+		return create(serverKey, StageTimer.NONE);
+	}
+
+	private static Session create(final String serverKey, final StageTimer timer) throws Exception {
+		final KeyPair keyPair = SharedSecret.newKeyPair();
+		timer.mark(BuildListener.Stage.KEYGEN, 0);
+		final Aes aes = SharedSecret.generateShared(serverKey, keyPair.getPrivate());
+		timer.mark(BuildListener.Stage.AGREEMENT, 0);
+		return new Session(SharedSecret.flatten(keyPair), aes);
+	}
+
+	/**
+	 * Drop precomputed sessions for server key not used anymore
+	 *
+	 * @param serverKey
+	 */
+	static void evict(final String serverKey) {
+		STOCKS.remove(serverKey);
+	}
+
+	private static Stock getStock(final String serverKey, final int size) {
+
+		Stock stock = STOCKS.get(serverKey);
+
+		if (Objects.isNull(stock)) {
+			purge();
+			stock = STOCKS.computeIfAbsent(serverKey, k -> new Stock(k, size));
+		}
+
+		stock.used = System.nanoTime();
+		return stock;
+	}
+
+	/**
+	 * Remove stock for server keys not used anymore (e.g. after key rotation)
+	 */
+	private static void purge() {
+		final long now = System.nanoTime();
+		STOCKS.values().removeIf(stock -> now - stock.used > IDLE);
+	}
+
+	/**
+	 * Sessions for a single server key
+	 */
+	private static final class Stock {
+
+		private final String serverKey;
+		private final BlockingQueue<Session> queue;
+		private final AtomicBoolean filling = new AtomicBoolean();
+
+		private volatile long used = System.nanoTime();
+
+		Stock(final String serverKey, final int size) {
+			this.serverKey = serverKey;
+			this.queue = new ArrayBlockingQueue<>(size);
+		}
+
+		/**
+		 * Schedule background fill if stock is below half
+		 */
+		void refill() {
+
+			final ExecutorService service = executor;
+
+			if (Objects.isNull(service) || queue.remainingCapacity() < queue.size()) {
+				return;
+			}
+
+			if (filling.compareAndSet(false, true)) {
+				try {
+					service.execute(this::fill);
+				} catch (Exception e) {
+					filling.set(false);
+				}
+			}
+		}
+
+		private void fill() {
+			try {
+				while (queue.remainingCapacity() > 0 && STOCKS.get(serverKey) == this) {
+					queue.offer(create(serverKey));
+				}
+			} catch (Exception e) {
+				final String msg = Utils.toMessage(e);
+				LOG.error(msg);
+				LOG.debug(msg, e);
+			} finally {
+				filling.set(false);
+			}
+		}
+	}
+}
@@ -4,16 +4,12 @@
 package io.greenscreens.client;
 
 import java.io.IOException;
-import java.security.InvalidAlgorithmParameterException;
+import java.security.GeneralSecurityException;
 import java.security.KeyFactory;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.SecureRandom;
-import java.security.spec.ECGenParameterSpec;
 import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.Base64.Decoder;
@@ -21,7 +17,6 @@ import java.util.Base64.Decoder;
 import javax.crypto.KeyAgreement;
 
 import org.bouncycastle.jce.interfaces.ECPublicKey;
-import org.bouncycastle.util.encoders.Hex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,25 +28,20 @@ enum SharedSecret {
 ;
 	private static final Logger LOG = LoggerFactory.getLogger(SharedSecret.class);
 	
-	private static final String ALGO = "ECDH"; 
-	private static final String CIPHER = "P-256"; // "prime256v1";
-	
-	static KeyFactory getKeyFactory() throws NoSuchAlgorithmException, NoSuchProviderException{
-		return KeyFactory.getInstance(ALGO, SecurityProvider.provider());
+	static KeyFactory getKeyFactory() throws GeneralSecurityException {
+		return CryptoContext.get().getEcFactory();
 	}
 	
-	static KeyPairGenerator getKeyPairGen() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException{
-		final KeyPairGenerator kpgen = KeyPairGenerator.getInstance(ALGO, SecurityProvider.provider());
-		kpgen.initialize(new ECGenParameterSpec(CIPHER), new SecureRandom());
-		return kpgen;
+	static KeyPairGenerator getKeyPairGen() throws GeneralSecurityException {
+		return CryptoContext.get().getEcGenerator();
 	}
 	
-	static KeyPair newKeyPair() throws InvalidAlgorithmParameterException, NoSuchAlgorithmException, NoSuchProviderException {
+	static KeyPair newKeyPair() throws GeneralSecurityException {
 		return SharedSecret.getKeyPairGen().generateKeyPair();
 	}
 	
 	public static byte[] doKeyExchange(final PrivateKey privateKey, final PublicKey publicKey) throws Exception {
-		final KeyAgreement ka = KeyAgreement.getInstance(ALGO, SecurityProvider.provider());
+		final KeyAgreement ka = CryptoContext.get().getAgreement();
 		ka.init(privateKey);
 		ka.doPhase(publicKey, true);
 		return ka.generateSecret();
@@ -71,42 +61,47 @@ enum SharedSecret {
 		return new Aes(aesData);
 	}
 	
-	public static byte[] generate(final String data, final PrivateKey key) {
-		final Decoder base64 = Base64.getDecoder();
-		byte[] bin = base64.decode(data);
-		return generate(bin, key);
-	}
-	
 	/**
 	 * Decrypt data with private key and given mode
 	 * 
-	 * @param buffer
+	 * @param data Base64 encoded X.509 public key
 	 * @param key
-	 * @param mode
 	 * @return
 	 */
-	private static byte[] generate(final byte[] buffer, final PrivateKey key) {
+	public static byte[] generate(final String data, final PrivateKey key) {
 
-		byte[] data = null;
+		byte[] secret = null;
 
 		try {
-			final X509EncodedKeySpec spec = new X509EncodedKeySpec(buffer);
-			final KeyFactory kf = getKeyFactory();
-			final PublicKey pk = kf.generatePublic(spec);
-			data = SharedSecret.doKeyExchange(key, pk);
+			final PublicKey pk = KeyCache.get(data, SharedSecret::toPublicKey);
+			secret = SharedSecret.doKeyExchange(key, pk);
 		} catch (Exception e) {
 			final String msg = Utils.toMessage(e);
 			LOG.error(msg);
 			LOG.debug(msg, e);
-			data = new byte[0];
+			secret = new byte[0];
 		}
 
-		return data;
+		return secret;
+	}
+
+	/**
+	 * Decode Base64 X.509 ECDH public key
+	 * 
+	 * @param data
+	 * @return
+	 * @throws Exception
+	 */
+	static PublicKey toPublicKey(final String data) throws Exception {
+		final Decoder base64 = Base64.getDecoder();
+		final X509EncodedKeySpec spec = new X509EncodedKeySpec(base64.decode(data));
+		final KeyFactory kf = getKeyFactory();
+		return kf.generatePublic(spec);
 	}
 
 	static String flatten(final KeyPair keyPair) {
 		final ECPublicKey eckey = (ECPublicKey) keyPair.getPublic();
-		return Hex.toHexString(eckey.getQ().getEncoded(true));
+		return HexCodec.toHex(eckey.getQ().getEncoded(true));
 	}
 
 }
\ No newline at end of file
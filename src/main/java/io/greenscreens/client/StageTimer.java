@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+/**
+ * Measures URL generation stages of a single request and reports them to listener.
+ * Disabled timer does not read the clock.
+ */
+class StageTimer {
+
+	/**
+	 * Timer doing nothing, used when no listener is set
+	 */
+	static final StageTimer NONE = new StageTimer(BuildListener.NONE, 0) {
+
+		@Override
+		void mark(final BuildListener.Stage stage, final int bytes) {
+		}
+
+		@Override
+		void complete(final BuildListener.Path path, final boolean modern, final TnAuth auth) {
+		}
+
+		@Override
+		void error(final Exception error) {
+		}
+	};
+
+	private final BuildListener listener;
+	private final long started;
+	private long last;
+
+	private StageTimer(final BuildListener listener, final long started) {
+		super();
+		this.listener = listener;
+		this.started = started;
+		this.last = started;
+	}
+
+	/**
+	 * Start measuring, returns disabled timer if there is no listener
+	 *
+	 * @param listener
+	 * @return
+	 */
+	static StageTimer start(final BuildListener listener) {
+		return listener == BuildListener.NONE ? NONE : new StageTimer(listener, System.nanoTime());
+	}
+
+	/**
+	 * Report stage finished now, started at previous mark
+	 *
+	 * @param stage
+	 * @param bytes
+	 */
+	void mark(final BuildListener.Stage stage, final int bytes) {
+		final long now = System.nanoTime();
+		listener.onStage(stage, now - last, bytes);
+		last = now;
+	}
+
+	void complete(final BuildListener.Path path, final boolean modern, final TnAuth auth) {
+		listener.onComplete(path, modern, auth.getVer(), auth.getBuild(), System.nanoTime() - started);
+	}
+
+	void error(final Exception error) {
+		listener.onError(error, System.nanoTime() - started);
+	}
+
+}
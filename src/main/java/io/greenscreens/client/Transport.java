@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport used to fetch Green Screens server authorization data.
+ * Implement to use own HTTP stack or shared connection pool,
+ * register with {@link Utils#setTransport(Transport)} or per builder.
+ * Implementations must be thread safe.
+ */
+public interface Transport {
+
+	/**
+	 * HTTP GET, returns raw response body
+	 * 
+	 * @param url
+	 * @return
+	 * @throws IOException
+	 */
+	byte[] get(String url) throws IOException;
+
+	/**
+	 * Asynchronous HTTP GET. Default implementation runs blocking
+	 * {@link #get(String)} on given executor.
+	 * 
+	 * @param url
+	 * @param executor for blocking implementations
+	 * @return
+	 */
+	default CompletableFuture<byte[]> getAsync(final String url, final Executor executor) {
+		final CompletableFuture<byte[]> future = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				future.complete(get(url));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Objects;
+
+/**
+ * Plain Java HTTP transport with HttpURLConnection.
+ * Connection is not disconnected, response is fully read and closed, 
+ * so JVM can reuse it (keep-alive). Response with non 2xx status
+ * is read and discarded, request fails with IOException.
+ */
+public final class UrlConnectionTransport implements Transport {
+
+	private final int connectTimeout;
+	private final int readTimeout;
+
+	/**
+	 * @param connectTimeout in milliseconds
+	 * @param readTimeout in milliseconds
+	 */
+	public UrlConnectionTransport(final int connectTimeout, final int readTimeout) {
+		super();
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	@Override
+	public byte[] get(final String urlString) throws IOException {
+
+		final URL url = new URL(urlString);
+		final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+		connection.setRequestMethod("GET");
+		connection.setConnectTimeout(connectTimeout);
+		connection.setReadTimeout(readTimeout);
+
+		final int status = connection.getResponseCode();
+
+		InputStream inputStream;
+		if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+			inputStream = connection.getErrorStream();
+		} else {
+			inputStream = connection.getInputStream();
+		}
+
+		byte[] data = new byte[0];
+		if (Objects.nonNull(inputStream)) {
+			try (InputStream in = inputStream) {
+				data = readAll(in, connection.getContentLength());
+			}
+		}
+
+		checkStatus(status, urlString);
+		return data;
+	}
+
+	/**
+	 * Fail on non 2xx response status
+	 * @param status
+	 * @param url
+	 * @throws IOException
+	 */
+	static void checkStatus(final int status, final String url) throws IOException {
+		if (status < 200 || status > 299) {
+			throw new IOException(String.format("HTTP status %d from %s", status, url));
+		}
+	}
+
+	/**
+	 * Read stream fully
+	 * @param in
+	 * @param size expected size or -1 if unknown
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] readAll(final InputStream in, final int size) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? size : 1024);
+		final byte[] buffer = new byte[4096];
+		int len = 0;
+		while ((len = in.read(buffer)) != -1) {
+			out.write(buffer, 0, len);
+		}
+		return out.toByteArray();
+	}
+
+}
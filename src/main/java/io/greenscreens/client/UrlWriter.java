@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Target for URL assembly.
+ * URL parts are written directly into caller provided target,
+ * encrypted data is hex encoded in small chunks through a fixed scratch buffer,
+ * so no intermediate strings are created. URL is always ASCII.
+ * Not thread safe, a new writer is used for every URL.
+ */
+abstract class UrlWriter {
+
+	// scratch buffer size, in hex digits
+	private static final int SCRATCH = 512;
+
+	private int length;
+
+	/**
+	 * Constant URL part, pre-encoded for both char and byte targets
+	 */
+	static final class Part {
+
+		private final String text;
+		private final byte[] bytes;
+
+		private Part(final String text) {
+			this.text = text;
+			this.bytes = text.getBytes(StandardCharsets.US_ASCII);
+		}
+
+		/**
+		 * @param text
+		 * @return
+		 * @throws IllegalArgumentException if text is not ASCII, e.g. non encoded URL
+		 */
+		static Part of(final String text) {
+			checkAscii(text);
+			return new Part(text);
+		}
+
+		int length() {
+			return bytes.length;
+		}
+	}
+
+	/**
+	 * Writer appending to a char target.
+	 * StringBuilder and CharBuffer are written in bulk,
+	 * other targets char by char through a CharSequence view.
+	 *
+	 * @param out
+	 * @return
+	 */
+	static UrlWriter of(final Appendable out) {
+		return new CharWriter(out);
+	}
+
+	/**
+	 * Writer producing ASCII bytes
+	 *
+	 * @param out
+	 * @return
+	 */
+	static UrlWriter of(final OutputStream out) {
+		return new ByteWriter(out);
+	}
+
+	/**
+	 * Number of chars written
+	 * @return
+	 */
+	final int length() {
+		return length;
+	}
+
+	final UrlWriter write(final Part part) throws IOException {
+		length += part.length();
+		writePart(part);
+		return this;
+	}
+
+	/**
+	 * Write ASCII text
+	 *
+	 * @param text
+	 * @return
+	 * @throws IOException
+	 */
+	final UrlWriter write(final String text) throws IOException {
+		length += text.length();
+		writeText(text);
+		return this;
+	}
+
+	/**
+	 * Write bytes as lowercase hex digits
+	 *
+	 * @param data
+	 * @param off
+	 * @param len
+	 * @return
+	 * @throws IOException
+	 */
+	final UrlWriter hex(final byte[] data, final int off, final int len) throws IOException {
+		length += HexCodec.encodedLength(len);
+		final int step = SCRATCH >> 1;
+		for (int i = off, end = off + len; i < end; i += step) {
+			writeHex(data, i, Math.min(step, end - i));
+		}
+		return this;
+	}
+
+	/**
+	 * URL parts must be already encoded, other chars would be
+	 * silently replaced in byte output
+	 *
+	 * @param text
+	 * @throws IllegalArgumentException
+	 */
+	static void checkAscii(final CharSequence text) {
+		for (int i = 0, len = text.length(); i < len; i++) {
+			if (text.charAt(i) > 0x7F) {
+				throw new IllegalArgumentException("URL part must be ASCII, encode it first: " + text);
+			}
+		}
+	}
+
+	protected abstract void writePart(Part part) throws IOException;
+
+	protected abstract void writeText(String text) throws IOException;
+
+	// at most SCRATCH / 2 bytes
+	protected abstract void writeHex(byte[] data, int off, int len) throws IOException;
+
+	private static final class CharWriter extends UrlWriter {
+
+		private final Appendable out;
+		private final char[] scratch = new char[SCRATCH];
+
+		CharWriter(final Appendable out) {
+			this.out = out;
+		}
+
+		@Override
+		protected void writePart(final Part part) throws IOException {
+			out.append(part.text);
+		}
+
+		@Override
+		protected void writeText(final String text) throws IOException {
+			out.append(text);
+		}
+
+		@Override
+		protected void writeHex(final byte[] data, final int off, final int len) throws IOException {
+			final int size = HexCodec.encode(data, off, len, scratch, 0);
+			if (out instanceof StringBuilder) {
+				((StringBuilder) out).append(scratch, 0, size);
+			} else if (out instanceof CharBuffer) {
+				((CharBuffer) out).put(scratch, 0, size);
+			} else {
+				out.append(CharBuffer.wrap(scratch, 0, size));
+			}
+		}
+	}
+
+	private static final class ByteWriter extends UrlWriter {
+
+		private final OutputStream out;
+		private final byte[] scratch = new byte[SCRATCH];
+
+		ByteWriter(final OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		protected void writePart(final Part part) throws IOException {
+			out.write(part.bytes);
+		}
+
+		@Override
+		protected void writeText(final String text) throws IOException {
+			for (int i = 0, len = text.length(); i < len; i += SCRATCH) {
+				final int size = Math.min(SCRATCH, len - i);
+				for (int j = 0; j < size; j++) {
+					final char c = text.charAt(i + j);
+					if (c > 0x7F) {
+						throw new IllegalArgumentException("URL part must be ASCII, encode it first: " + text);
+					}
+					scratch[j] = (byte) c;
+				}
+				out.write(scratch, 0, size);
+			}
+		}
+
+		@Override
+		protected void writeHex(final byte[] data, final int off, final int len) throws IOException {
+			out.write(scratch, 0, HexCodec.encode(data, off, len, scratch, 0));
+		}
+	}
+}
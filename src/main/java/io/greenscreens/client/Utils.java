@@ -3,13 +3,11 @@
  */
 package io.greenscreens.client;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Set of shared util methods
@@ -19,6 +17,61 @@ public enum Utils {
 
 	public static boolean PRINT_STACK = false;
 
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int READ_TIMEOUT = 5000;
+
+	/**
+	 * Default transport, pooled Java 11+ HTTP client when available
+	 */
+	private static volatile Transport transport = initTransport();
+
+	private static Transport initTransport() {
+		return initTransport(CONNECT_TIMEOUT, READ_TIMEOUT);
+	}
+
+	/**
+	 * HttpClientTransport is compiled for Java 11,
+	 * so it is loaded by name only when running on Java 11+
+	 */
+	private static Transport initTransport(final int connectTimeout, final int readTimeout) {
+		if (getVersion() >= 11) {
+			try {
+				final Class<?> type = Class.forName("io.greenscreens.client.HttpClientTransport");
+				return (Transport) type.getConstructor(Duration.class, Duration.class)
+						.newInstance(Duration.ofMillis(connectTimeout), Duration.ofMillis(connectTimeout + readTimeout));
+			} catch (ReflectiveOperationException | LinkageError e) {
+				// fall through to Java 8 transport
+			}
+		}
+		return new UrlConnectionTransport(connectTimeout, readTimeout);
+	}
+
+	/**
+	 * Replace default transport with one using given timeouts (default 5 seconds each)
+	 * @param connect
+	 * @param read
+	 * @param unit
+	 */
+	public static void setTimeouts(final long connect, final long read, final TimeUnit unit) {
+		transport = initTransport((int) unit.toMillis(connect), (int) unit.toMillis(read));
+	}
+
+	/**
+	 * Set default transport used to fetch server data
+	 * @param value
+	 */
+	public static void setTransport(final Transport value) {
+		transport = Objects.requireNonNull(value);
+	}
+
+	/**
+	 * Get default transport used to fetch server data
+	 * @return
+	 */
+	public static Transport getTransport() {
+		return transport;
+	}
+
 	/**
 	 * Check java version used
 	 * @return
@@ -111,35 +164,17 @@ public enum Utils {
 	 * @throws IOException
 	 */
     public static String sendGet(final String urlString) throws IOException {
-    	
-    	final URL url = new URL(urlString);
-        final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(5000); // optional
-        connection.setReadTimeout(5000);    // optional
-
-        final int status = connection.getResponseCode();
-
-        InputStream inputStream;
-        if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
-            inputStream = connection.getErrorStream();
-        } else {
-            inputStream = connection.getInputStream();
-        }
-
-        // Read the response
-        final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-        final StringBuilder response = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            response.append(line).append("\n");
-        }
-
-        reader.close();
-        connection.disconnect();
+        return new String(fetch(urlString), StandardCharsets.UTF_8);
+    }
 
-        return response.toString();
+	/**
+	 * HTTP get returning raw response body, uses default transport
+	 * @param urlString
+	 * @return
+	 * @throws IOException
+	 */
+    public static byte[] fetch(final String urlString) throws IOException {
+    	return transport.get(urlString);
     }
 
     // RFC 4648 Base32 alphabet
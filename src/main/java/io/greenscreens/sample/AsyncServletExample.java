@@ -0,0 +1,265 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.sample;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.greenscreens.client.Builder;
+import io.greenscreens.client.BuilderProfile;
+import io.greenscreens.client.IpUtils;
+import io.greenscreens.client.LoginSpec;
+import io.greenscreens.client.Utils;
+
+/**
+ * Non-blocking servlet example to generate Web Terminal URL.
+ * Generator is configured once, container thread is released
+ * right after the request is started, server data is fetched on internal
+ * threads, URL is encrypted on a dedicated compute pool and written straight
+ * to the response, without creating URI or intermediate strings.
+ * Compute pool has a bounded queue, requests over its capacity are
+ * rejected with 503. Every request is limited by a deadline,
+ * so a slow server can not hold connections open.
+ */
+@WebServlet(urlPatterns = "/AsyncServletExample", asyncSupported = true)
+public class AsyncServletExample extends ServletExample {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger LOG = LoggerFactory.getLogger(AsyncServletExample.class);
+
+	// Green Screens Server URL
+	private static final String URL  = "http://localhost:9080/";
+
+	// max. time for a single request
+	private static final long DEADLINE = TimeUnit.SECONDS.toMillis(5);
+
+	// max. requests waiting for compute thread
+	private static final int QUEUE = 256;
+
+	private transient BuilderProfile profile;
+	private transient ExecutorService executor;
+
+	@Override
+	public void init() throws ServletException {
+
+		profile = Builder.get(URL, null, null)
+				.setUUID("2").setHost("DEMO")
+				.setExpiration(30, TimeUnit.SECONDS)
+				.setFetchTimeout(DEADLINE / 2, TimeUnit.MILLISECONDS)
+				.toProfile();
+
+		final int threads = Runtime.getRuntime().availableProcessors();
+		final AtomicInteger counter = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE), r -> {
+			final Thread thread = new Thread(r, "gs-url-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@Override
+	public void destroy() {
+		if (Objects.nonNull(executor)) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Use fingerprint.js inside browser to generate browser id
+	 * This is mandatory only if URL sharing is enabled
+	 * http://localhost:9080/AsyncServletExample?fp=12342343
+	 */
+	@Override
+	protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+
+		final LoginSpec spec = LoginSpec.get("QSECOFR", "QSECOFR")
+				.setIpAddress(IpUtils.getClientIpAddress(req))
+				.setAppID(getFingerprint(req));
+
+		final AsyncContext ctx = req.startAsync();
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicReference<CompletableFuture<Integer>> task = new AtomicReference<>();
+
+		ctx.setTimeout(DEADLINE);
+		ctx.addListener(new AsyncListener() {
+
+			@Override
+			public void onTimeout(final AsyncEvent event) throws IOException {
+				cancel(task);
+				fail(ctx, done, new TimeoutException("Request deadline exceeded"));
+			}
+
+			@Override
+			public void onError(final AsyncEvent event) throws IOException {
+				cancel(task);
+				done.set(true);
+			}
+
+			@Override
+			public void onComplete(final AsyncEvent event) throws IOException {
+				done.set(true);
+			}
+
+			@Override
+			public void onStartAsync(final AsyncEvent event) throws IOException {
+			}
+		});
+
+		final ResponseStream out = new ResponseStream(ctx, done);
+		task.set(profile.writeToAsync(spec, out, executor));
+		task.get().whenComplete((len, err) -> send(ctx, done, out, err));
+	}
+
+	private static void cancel(final AtomicReference<CompletableFuture<Integer>> task) {
+		final CompletableFuture<Integer> future = task.get();
+		if (Objects.nonNull(future)) {
+			future.cancel(false);
+		}
+	}
+
+	/**
+	 * Complete the request once URL is written as response body.
+	 * URL is written only after it is encrypted, response is small enough
+	 * to fit into container buffer, so write does not block the compute thread.
+	 *
+	 * @param ctx
+	 * @param done
+	 * @param out
+	 * @param err
+	 */
+	private static void send(final AsyncContext ctx, final AtomicBoolean done, final ResponseStream out, final Throwable err) {
+
+		if (Objects.nonNull(err)) {
+			if (!out.claimed) {
+				fail(ctx, done, err);
+				return;
+			}
+			final Throwable cause = unwrap(err);
+			final String msg = Utils.toMessage(cause);
+			LOG.error(msg);
+			LOG.debug(msg, cause);
+		}
+
+		if (out.claimed) {
+			ctx.complete();
+		}
+	}
+
+	/**
+	 * Complete the request with error status, 403 if client address is rejected,
+	 * 503 if compute pool is full, 504 if server data or request deadline
+	 * is exceeded, 502 otherwise.
+	 * Rejected clients and overload are expected, logged as warning without stack trace.
+	 *
+	 * @param ctx
+	 * @param done
+	 * @param err
+	 */
+	private static void fail(final AsyncContext ctx, final AtomicBoolean done, final Throwable err) {
+
+		if (!done.compareAndSet(false, true)) {
+			return;
+		}
+
+		final Throwable cause = unwrap(err);
+		final String msg = Utils.toMessage(cause);
+		if (cause instanceof SecurityException || cause instanceof RejectedExecutionException) {
+			LOG.warn(msg);
+		} else {
+			LOG.error(msg);
+			LOG.debug(msg, cause);
+		}
+
+		try {
+			final HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+			if (cause instanceof SecurityException) {
+				resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+			} else if (cause instanceof RejectedExecutionException) {
+				resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+			} else if (cause instanceof TimeoutException) {
+				resp.setStatus(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+			} else {
+				resp.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+			}
+		} finally {
+			ctx.complete();
+		}
+	}
+
+	/**
+	 * Response body claiming the request on first write,
+	 * so URL is not written after the request deadline completed it
+	 */
+	private static final class ResponseStream extends OutputStream {
+
+		private final AsyncContext ctx;
+		private final AtomicBoolean done;
+
+		private ServletOutputStream out;
+		private boolean claimed;
+
+		ResponseStream(final AsyncContext ctx, final AtomicBoolean done) {
+			this.ctx = ctx;
+			this.done = done;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			claim().write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			claim().write(b, off, len);
+		}
+
+		private ServletOutputStream claim() throws IOException {
+			if (Objects.isNull(out)) {
+				if (!done.compareAndSet(false, true)) {
+					throw new IOException("Request already completed");
+				}
+				claimed = true;
+				final HttpServletResponse resp = (HttpServletResponse) ctx.getResponse();
+				resp.setContentType("text/plain");
+				out = resp.getOutputStream();
+			}
+			return out;
+		}
+	}
+
+	private static Throwable unwrap(final Throwable e) {
+		Throwable cause = e;
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException) && Objects.nonNull(cause.getCause())) {
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.sample;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.greenscreens.client.Builder;
+import io.greenscreens.client.BuilderProfile;
+import io.greenscreens.client.LoginSpec;
+import io.greenscreens.client.PinnedKey;
+
+/**
+ * Command line tool to generate Web Terminal URLs for many users at once.
+ * Input rows are read from memory mapped CSV or JSONL file,
+ * URLs are generated in parallel with a single shared {@link BuilderProfile},
+ * so server data is fetched once. Results are written in input order
+ * as soon as they are ready, only a bounded window of rows is kept in memory.
+ * Throughput and latency percentiles are reported to stderr at the end.
+ *
+ * <pre>
+ * java -cp ... io.greenscreens.sample.BulkGenerator --url http://localhost:9080 --in users.csv --out links.csv
+ *
+ * --url     Green Screens server address (required)
+ * --in      input file, .jsonl for JSON lines, CSV otherwise (required)
+ * --out     output file, .jsonl for JSON lines, CSV otherwise; stdout if not set
+ * --api     API key
+ * --otp     OTP key
+ * --uuid    default server UUID
+ * --host    default host
+ * --exp     URL expiration in seconds
+ * --key     pinned server key properties, see {@link PinnedKey#load(Path)}
+ * --threads number of generator threads, default is number of CPUs
+ * </pre>
+ *
+ * CSV input must have a header row. Columns recognized in CSV header
+ * and JSONL objects are uuid, host, user, password, device (or displayName),
+ * ip (or ipAddress), token, appID and exp (seconds), other columns are ignored.
+ */
+public class BulkGenerator {
+
+	// max. file region mapped at once
+	private static final int CHUNK = 64 * 1024 * 1024;
+
+	// rows in progress per generator thread
+	private static final int WINDOW = 64;
+
+	private static final int URL_CAPACITY = 1536;
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final BuilderProfile profile;
+	private final ExecutorService executor;
+	private final int window;
+
+	private final Histogram latency = new Histogram();
+	private long errors;
+
+	BulkGenerator(final BuilderProfile profile, final int threads) {
+		this.profile = profile;
+		this.executor = Executors.newFixedThreadPool(threads);
+		this.window = threads * WINDOW;
+	}
+
+	public static void main(final String[] args) throws Exception {
+
+		final Map<String, String> options = parseArgs(args);
+		final String url = options.get("url");
+		final String in = options.get("in");
+
+		if (Objects.isNull(url) || Objects.isNull(in)) {
+			System.err.println("Usage: BulkGenerator --url URL --in FILE [--out FILE] [--api KEY] [--otp KEY]"
+					+ " [--uuid UUID] [--host HOST] [--exp SECONDS] [--key FILE] [--threads N]");
+			System.exit(1);
+			return;
+		}
+
+		final Builder builder = Builder.get(url, options.get("api"), options.get("otp"));
+		builder.setUUID(options.get("uuid")).setHost(options.get("host"));
+
+		if (options.containsKey("exp")) {
+			builder.setExpiration(Long.parseLong(options.get("exp")), TimeUnit.SECONDS);
+		}
+
+		if (options.containsKey("key")) {
+			builder.setPinnedKey(PinnedKey.load(Paths.get(options.get("key"))));
+		}
+
+		final int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads")) : Runtime.getRuntime().availableProcessors();
+		final BulkGenerator generator = new BulkGenerator(builder.toProfile(), Math.max(1, threads));
+
+		final String out = options.get("out");
+		final OutputStream stream = Objects.isNull(out) ? System.out : Files.newOutputStream(Paths.get(out));
+		final boolean json = Objects.nonNull(out) && out.endsWith(".jsonl");
+
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), 64 * 1024)) {
+			generator.run(Paths.get(in), writer, json);
+		} finally {
+			generator.executor.shutdown();
+		}
+	}
+
+	/**
+	 * Generate URLs for all input rows
+	 *
+	 * @param in
+	 * @param out
+	 * @param json write JSON lines if true, CSV otherwise
+	 * @throws IOException
+	 */
+	void run(final Path in, final Writer out, final boolean json) throws IOException {
+
+		final boolean jsonInput = in.toString().endsWith(".jsonl");
+		final ArrayDeque<CompletableFuture<Result>> pending = new ArrayDeque<>(window);
+		final long start = System.nanoTime();
+		long rows = 0;
+
+		if (!json) {
+			out.write("row,user,url,error\n");
+		}
+
+		List<String> header = null;
+
+		try (LineReader reader = new LineReader(in)) {
+
+			String line;
+			while (Objects.nonNull(line = reader.next())) {
+
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				if (!jsonInput && Objects.isNull(header)) {
+					header = parseCsv(line);
+					continue;
+				}
+
+				final long row = ++rows;
+				pending.add(submit(row, line, header, jsonInput));
+
+				while (pending.size() >= window) {
+					write(out, pending.poll().join(), json);
+				}
+			}
+		}
+
+		while (!pending.isEmpty()) {
+			write(out, pending.poll().join(), json);
+		}
+
+		out.flush();
+		report(System.err, rows, System.nanoTime() - start);
+	}
+
+	/**
+	 * Parse row and start URL generation, malformed row is reported
+	 * as row error and the batch continues
+	 */
+	private CompletableFuture<Result> submit(final long row, final String line, final List<String> header, final boolean jsonInput) {
+
+		final Map<String, String> values;
+		final LoginSpec spec;
+
+		try {
+			values = jsonInput ? fromJson(line) : fromCsv(header, line);
+			spec = toSpec(values);
+		} catch (Exception e) {
+			return CompletableFuture.completedFuture(new Result(row, null, null, e));
+		}
+
+		final String user = values.get("user");
+		return CompletableFuture.supplyAsync(() -> generate(row, user, spec), executor);
+	}
+
+	private Result generate(final long row, final String user, final LoginSpec spec) {
+		final long start = System.nanoTime();
+		try {
+			final String url = profile.writeTo(spec, new StringBuilder(URL_CAPACITY)).toString();
+			latency.record(System.nanoTime() - start);
+			return new Result(row, user, url, null);
+		} catch (Exception e) {
+			return new Result(row, user, null, e);
+		}
+	}
+
+	private void write(final Writer out, final Result result, final boolean json) throws IOException {
+
+		if (Objects.nonNull(result.error)) {
+			errors++;
+		}
+
+		final String error = Objects.isNull(result.error) ? null : String.valueOf(result.error.getMessage());
+
+		if (json) {
+			final ObjectNode node = MAPPER.createObjectNode();
+			node.put("row", result.row);
+			node.put("user", result.user);
+			node.put("url", result.url);
+			node.put("error", error);
+			out.write(MAPPER.writeValueAsString(node));
+		} else {
+			out.write(Long.toString(result.row));
+			out.write(',');
+			writeCsv(out, result.user);
+			out.write(',');
+			writeCsv(out, result.url);
+			out.write(',');
+			writeCsv(out, error);
+		}
+
+		out.write('\n');
+	}
+
+	private void report(final PrintStream out, final long rows, final long nanos) {
+		final double seconds = nanos / 1e9;
+		out.printf(Locale.ROOT, "rows=%d errors=%d time=%.2fs throughput=%.0f/s%n", rows, errors, seconds, rows / Math.max(seconds, 1e-9));
+		out.printf(Locale.ROOT, "latency ms p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f%n",
+				latency.percentile(0.5) / 1e6, latency.percentile(0.9) / 1e6, latency.percentile(0.99) / 1e6,
+				latency.percentile(0.999) / 1e6, latency.percentile(1) / 1e6);
+	}
+
+	/**
+	 * Row values from JSON object line
+	 */
+	private static Map<String, String> fromJson(final String line) throws IOException {
+
+		final JsonNode node = MAPPER.readTree(line);
+		final Map<String, String> values = new HashMap<>();
+
+		final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+		while (fields.hasNext()) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			if (!field.getValue().isNull()) {
+				values.put(field.getKey(), field.getValue().asText());
+			}
+		}
+
+		return values;
+	}
+
+	/**
+	 * Row values from CSV line with given header
+	 */
+	private static Map<String, String> fromCsv(final List<String> header, final String line) {
+
+		final List<String> cells = parseCsv(line);
+		final Map<String, String> values = new HashMap<>();
+
+		for (int i = 0; i < header.size() && i < cells.size(); i++) {
+			if (!cells.get(i).isEmpty()) {
+				values.put(header.get(i).trim(), cells.get(i));
+			}
+		}
+
+		return values;
+	}
+
+	private static LoginSpec toSpec(final Map<String, String> values) {
+
+		final LoginSpec spec = LoginSpec.get(values.get("user"), values.get("password"));
+		spec.setUUID(values.get("uuid"));
+		spec.setHost(values.get("host"));
+		spec.setDisplayName(values.getOrDefault("device", values.get("displayName")));
+		spec.setIpAddress(values.getOrDefault("ip", values.get("ipAddress")));
+		spec.setToken(values.get("token"));
+
+		if (values.containsKey("appID")) {
+			spec.setAppID(Long.parseLong(values.get("appID")));
+		}
+
+		if (values.containsKey("exp")) {
+			spec.setExpiration(Long.parseLong(values.get("exp")), TimeUnit.SECONDS);
+		}
+
+		return spec;
+	}
+
+	/**
+	 * Split CSV line, quoted cells may contain separators and doubled quotes
+	 */
+	private static List<String> parseCsv(final String line) {
+
+		final List<String> cells = new ArrayList<>();
+		final StringBuilder cell = new StringBuilder();
+		boolean quoted = false;
+
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					cell.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					cell.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				cells.add(cell.toString());
+				cell.setLength(0);
+			} else if (c != '\r') {
+				cell.append(c);
+			}
+		}
+
+		cells.add(cell.toString());
+		return cells;
+	}
+
+	private static void writeCsv(final Writer out, final String value) throws IOException {
+
+		if (Objects.isNull(value)) {
+			return;
+		}
+
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			out.write(value);
+			return;
+		}
+
+		out.write('"');
+		out.write(value.replace("\"", "\"\""));
+		out.write('"');
+	}
+
+	private static Map<String, String> parseArgs(final String[] args) {
+		final Map<String, String> options = new HashMap<>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].startsWith("--")) {
+				options.put(args[i].substring(2), args[i + 1]);
+			}
+		}
+		return options;
+	}
+
+	/**
+	 * Generated URL or error for a single input row
+	 */
+	private static final class Result {
+
+		private final long row;
+		private final String user;
+		private final String url;
+		private final Exception error;
+
+		Result(final long row, final String user, final String url, final Exception error) {
+			this.row = row;
+			this.user = user;
+			this.url = url;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Reads UTF-8 lines from a file mapped into memory region by region,
+	 * so files of any size are read without loading them to heap
+	 */
+	private static final class LineReader implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final long size;
+
+		private MappedByteBuffer buffer;
+		private long offset;
+		private byte[] line = new byte[256];
+
+		LineReader(final Path file) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.size = channel.size();
+		}
+
+		/**
+		 * Next line without line terminator
+		 *
+		 * @return null at end of file
+		 * @throws IOException
+		 */
+		String next() throws IOException {
+
+			if (Objects.isNull(buffer) || !buffer.hasRemaining()) {
+				if (!map(offset + (Objects.isNull(buffer) ? 0 : buffer.position()))) {
+					return null;
+				}
+			}
+
+			final int start = buffer.position();
+
+			for (int i = start; i < buffer.limit(); i++) {
+				if (buffer.get(i) == '\n') {
+					buffer.position(i + 1);
+					return decode(start, i);
+				}
+			}
+
+			// line continues in the next region
+			if (offset + buffer.limit() < size) {
+				if (buffer.limit() - start == CHUNK) {
+					throw new IOException("Line too long at offset " + (offset + start));
+				}
+				map(offset + start);
+				return next();
+			}
+
+			buffer.position(buffer.limit());
+			return decode(start, buffer.limit());
+		}
+
+		private boolean map(final long position) throws IOException {
+			if (position >= size) {
+				return false;
+			}
+			offset = position;
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(CHUNK, size - position));
+			return true;
+		}
+
+		private String decode(final int start, final int end) {
+			final int len = end - start;
+			if (line.length < len) {
+				line = new byte[Math.max(len, line.length << 1)];
+			}
+			for (int i = 0; i < len; i++) {
+				line[i] = buffer.get(start + i);
+			}
+			return new String(line, 0, len, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Log-linear latency histogram, 16 sub-buckets per power of two,
+	 * about 6% precision with fixed memory
+	 */
+	private static final class Histogram {
+
+		private static final int SUB = 16;
+
+		private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+
+		void record(final long nanos) {
+			counts.incrementAndGet(index(Math.max(1, nanos)));
+		}
+
+		/**
+		 * Approximate value at percentile, upper bound of bucket
+		 *
+		 * @param p between 0 and 1
+		 * @return nanoseconds
+		 */
+		double percentile(final double p) {
+
+			long total = 0;
+			for (int i = 0; i < counts.length(); i++) {
+				total += counts.get(i);
+			}
+
+			if (total == 0) {
+				return 0;
+			}
+
+			final long rank = Math.max(1, (long) Math.ceil(p * total));
+			long seen = 0;
+
+			for (int i = 0; i < counts.length(); i++) {
+				seen += counts.get(i);
+				if (seen >= rank) {
+					return upper(i);
+				}
+			}
+
+			return upper(counts.length() - 1);
+		}
+
+		private static int index(final long value) {
+			final int exp = 63 - Long.numberOfLeadingZeros(value);
+			if (exp < 4) {
+				return (int) value;
+			}
+			final int sub = (int) ((value >>> (exp - 4)) & (SUB - 1));
+			return (exp - 3) * SUB + sub;
+		}
+
+		private static double upper(final int index) {
+			if (index < SUB) {
+				return index;
+			}
+			final int exp = index / SUB + 3;
+			final int sub = index % SUB;
+			return (double) (SUB + sub + 1) * (1L << (exp - 4));
+		}
+	}
+}
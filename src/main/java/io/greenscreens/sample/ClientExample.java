@@ -4,10 +4,15 @@
 package io.greenscreens.sample;
 
 import java.net.URI;
+import java.nio.file.Paths;
+import java.time.Clock;
 import java.util.concurrent.TimeUnit;
 
 import io.greenscreens.client.Builder;
 import io.greenscreens.client.Builder.ExpirationMode;
+import io.greenscreens.client.BuilderProfile;
+import io.greenscreens.client.LoginSpec;
+import io.greenscreens.client.PinnedKey;
 
 public class ClientExample {
 
@@ -125,4 +130,42 @@ public class ClientExample {
 		System.out.println(uri.toString());
 	}
 
+	/**
+	 * Create profile once at startup and share it between threads,
+	 * only user specific values are set per request
+	 * @throws Exception
+	 */
+	public static void testWithProfile() throws Exception {
+
+		final BuilderProfile profile = Builder.get(URL, null, null)
+				.setUUID("0").setHost("DEMO")
+				.setExpiration(30, TimeUnit.SECONDS)
+				.toProfile();
+
+		final LoginSpec spec = LoginSpec.get("QSECOFR", "QSECOFR")
+				.setDisplayName("DSPGSADMIN")
+				.setIpAddress("127.0.0.1");
+
+		URI uri = profile.build(spec);
+		System.out.println(uri.toString());
+	}
+
+
+	/**
+	 * Generate URLs without contacting the server, 
+	 * server key, version and build are taken from a file prepared at deploy time
+	 * @throws Exception
+	 */
+	public static void testOffline() throws Exception {
+
+		final BuilderProfile profile = Builder.get(URL, null, null)
+				.setUUID("0").setHost("DEMO")
+				.setPinnedKey(PinnedKey.load(Paths.get("gs-server.properties")))
+				.setClock(Clock.systemUTC())
+				.setExpiration(30, TimeUnit.SECONDS)
+				.toProfile();
+
+		URI uri = profile.build(LoginSpec.get("QSECOFR", "QSECOFR"));
+		System.out.println(uri.toString());
+	}
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 - 2023 Green Screens Ltd.
+ */
+package io.greenscreens.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Java 11+ HTTP client used to fetch server data.
+ * Single client instance is shared, so connections are kept alive and pooled,
+ * TLS sessions are resumed and HTTP/2 is used for https when server supports it.
+ * Requires Java 11+, on Java 8 use {@link UrlConnectionTransport}.
+ */
+public final class HttpClientTransport implements Transport {
+
+	private static final String USER_AGENT = "Green Screens Client";
+
+	private final HttpClient client;
+	private final Duration timeout;
+
+	/**
+	 * @param connectTimeout
+	 * @param timeout request timeout, including response read
+	 */
+	public HttpClientTransport(final Duration connectTimeout, final Duration timeout) {
+		super();
+		this.timeout = timeout;
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.connectTimeout(connectTimeout)
+				.build();
+	}
+
+	@Override
+	public byte[] get(final String url) throws IOException {
+
+		final HttpRequest request = newRequest(url);
+
+		try {
+			return toBody(client.send(request, HttpResponse.BodyHandlers.ofByteArray()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Non-blocking request, executor is not used
+	 */
+	@Override
+	public CompletableFuture<byte[]> getAsync(final String url, final Executor executor) {
+		return client.sendAsync(newRequest(url), HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+			try {
+				return toBody(response);
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Response body, non 2xx status fails request
+	 * @param response
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] toBody(final HttpResponse<byte[]> response) throws IOException {
+		UrlConnectionTransport.checkStatus(response.statusCode(), response.uri().toString());
+		return response.body();
+	}
+
+	private HttpRequest newRequest(final String url) {
+
+		final URI uri = URI.create(url);
+
+		// h2c upgrade is not used for plain http
+		final HttpClient.Version version = "https".equalsIgnoreCase(uri.getScheme()) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+
+		return HttpRequest.newBuilder(uri)
+				.GET()
+				.version(version)
+				.timeout(timeout)
+				.setHeader("User-Agent", USER_AGENT)
+				.build();
+	}
+
+}